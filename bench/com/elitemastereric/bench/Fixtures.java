@@ -0,0 +1,211 @@
+package com.elitemastereric.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import com.sun.source.util.DocTrees;
+import com.sun.source.util.JavacTask;
+
+/**
+ * Synthetic Java sources, compiled in memory, to benchmark the writers against.
+ */
+public class Fixtures {
+    public static final String PACKAGE = "bench.fixture";
+
+    /**
+     * The types declared by the fixture sources, and the compiler utilities to render them with.
+     */
+    public final Set<TypeElement> types;
+    public final Types typeUtils;
+    public final DocTrees docTrees;
+
+    private Fixtures(Set<TypeElement> types, Types typeUtils, DocTrees docTrees) {
+        this.types = types;
+        this.typeUtils = typeUtils;
+        this.docTrees = docTrees;
+    }
+
+    /**
+     * Parses and attributes the fixture sources. No class files are written.
+     */
+    public static Fixtures compile() {
+        List<JavaFileObject> sources = List.of(
+                source("DeepGenerics", deepGenerics(60)),
+                source("GenericApi", genericApi(60)),
+                source("HugeEnum", hugeEnum(2000)),
+                source("Documented", documented(200)),
+                source("Nested", nested(6, 2)));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticListener<JavaFileObject> listener = diagnostic -> {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                throw new IllegalStateException("Fixture failed to compile: " + diagnostic);
+            }
+        };
+        JavacTask task = (JavacTask) compiler.getTask(null, null, listener, List.of("-proc:none"), null, sources);
+
+        Set<TypeElement> types = new LinkedHashSet<>();
+        try {
+            for (Element element : task.analyze()) {
+                if (element instanceof TypeElement) {
+                    types.add((TypeElement) element);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return new Fixtures(types, task.getTypes(), DocTrees.instance(task));
+    }
+
+    public TypeElement get(String simpleName) {
+        for (TypeElement type : types) {
+            if (type.getSimpleName().contentEquals(simpleName)) return type;
+        }
+        throw new IllegalArgumentException("No fixture named " + simpleName);
+    }
+
+    /**
+     * Fields and methods with deeply nested generic types and functional interfaces.
+     */
+    static String deepGenerics(int methods) {
+        StringBuilder result = new StringBuilder();
+        result.append("package ").append(PACKAGE).append(";\n\n");
+        result.append("import java.util.*;\nimport java.util.function.*;\n\n");
+        result.append("public class DeepGenerics<T extends Comparable<? super T>, R> {\n");
+        for (int i = 0; i < methods; i++) {
+            result.append("    public Map<String, List<Map<Integer, Set<Optional<T>>>>> map").append(i)
+                    .append(";\n");
+            result.append("    public <K extends Number> Function<? super T, ? extends Map<K, List<R>>> apply").append(i).append("(")
+                    .append("BiFunction<Map<String, List<T>>, Supplier<? extends R>, Optional<List<K>>> f, ")
+                    .append("List<? extends Map<K, T[]>> values) { return null; }\n");
+        }
+        result.append("}\n");
+        return result.toString();
+    }
+
+    /**
+     * An interface of generic methods.
+     */
+    static String genericApi(int methods) {
+        StringBuilder result = new StringBuilder();
+        result.append("package ").append(PACKAGE).append(";\n\n");
+        result.append("import java.util.*;\nimport java.util.function.*;\n\n");
+        result.append("public interface GenericApi<T> {\n");
+        for (int i = 0; i < methods; i++) {
+            result.append("    <R> Optional<Map<String, List<R>>> call").append(i)
+                    .append("(Function<? super T, ? extends R> mapper, Collection<? extends T> values);\n");
+        }
+        result.append("}\n");
+        return result.toString();
+    }
+
+    /**
+     * A documented enum with a great many constants.
+     */
+    static String hugeEnum(int constants) {
+        StringBuilder result = new StringBuilder();
+        result.append("package ").append(PACKAGE).append(";\n\n");
+        result.append("/** An enum with many constants. */\n");
+        result.append("public enum HugeEnum {\n");
+        for (int i = 0; i < constants; i++) {
+            result.append("    /** Constant number ").append(i).append(". */\n");
+            result.append("    CONSTANT_").append(i).append(",\n");
+        }
+        result.append("    ;\n");
+        result.append("    public int code() { return ordinal(); }\n");
+        result.append("}\n");
+        return result.toString();
+    }
+
+    /**
+     * Methods with long doc comments, using inline and block tags.
+     */
+    static String documented(int methods) {
+        StringBuilder result = new StringBuilder();
+        result.append("package ").append(PACKAGE).append(";\n\n");
+        result.append("/**\n * A heavily documented class.\n * <p>\n * See {@link java.util.List} and {@code code}.\n */\n");
+        result.append("public class Documented {\n");
+        for (int i = 0; i < methods; i++) {
+            result.append("    /**\n");
+            for (int line = 0; line < 12; line++) {
+                result.append("     * Line ").append(line).append(" of the description of method ").append(i)
+                        .append(", which mentions {@code value} and {@link java.util.Map#get(Object)}.\n");
+            }
+            result.append("     * <p>\n     * A second paragraph.\n");
+            result.append("     * @param value the value\n     * @param other the other value\n");
+            result.append("     * @return the result\n     * @throws IllegalStateException when things go wrong\n");
+            result.append("     */\n");
+            result.append("    public String method").append(i).append("(String value, int other) { return value; }\n\n");
+        }
+        result.append("}\n");
+        return result.toString();
+    }
+
+    /**
+     * Inner classes nested several levels deep, which refer to each other.
+     */
+    static String nested(int depth, int breadth) {
+        StringBuilder result = new StringBuilder();
+        result.append("package ").append(PACKAGE).append(";\n\n");
+        result.append("public class Nested {\n");
+        nestedBody(result, "Nested", depth, breadth, "    ");
+        result.append("}\n");
+        return result.toString();
+    }
+
+    private static void nestedBody(StringBuilder result, String name, int depth, int breadth, String indent) {
+        for (int i = 0; i < 4; i++) {
+            result.append(indent).append("public ").append(name).append(" field").append(i).append(";\n");
+            result.append(indent).append("public java.util.List<").append(name).append("> method").append(i)
+                    .append("(").append(name).append(" value) { return null; }\n");
+        }
+        if (depth == 0) return;
+
+        for (int i = 0; i < breadth; i++) {
+            String innerName = "Inner" + depth + "_" + i;
+            result.append(indent).append("public static class ").append(innerName).append(" {\n");
+            nestedBody(result, innerName, depth - 1, breadth, indent + "    ");
+            result.append(indent).append("}\n");
+        }
+    }
+
+    private static JavaFileObject source(String name, String content) {
+        URI uri = URI.create("string:///" + PACKAGE.replace('.', '/') + "/" + name + ".java");
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+
+    /**
+     * @return The given type and every type nested inside it.
+     */
+    static List<TypeElement> withNested(TypeElement type) {
+        List<TypeElement> result = new ArrayList<>();
+        result.add(type);
+        for (Element element : type.getEnclosedElements()) {
+            if (element instanceof TypeElement) {
+                result.addAll(withNested((TypeElement) element));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,206 @@
+package com.elitemastereric.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+
+import com.elitemastereric.writer.ClassWriter;
+import com.elitemastereric.writer.DocumentationBuilder;
+import com.elitemastereric.writer.EnumWriter;
+import com.elitemastereric.writer.HaxePrinter;
+import com.elitemastereric.writer.InterfaceWriter;
+import com.elitemastereric.writer.NameTable;
+import com.elitemastereric.writer.TypeBuilder;
+
+/**
+ * Measures the throughput and allocation of each writer and visitor in isolation.
+ *
+ * Usage: java com.elitemastereric.bench.WriterBenchmark [-warmup MS] [-time MS] [-iterations N] [filter]
+ *
+ * Each benchmark is run repeatedly for the warmup time, then measured over several iterations.
+ * Only benchmarks whose name contains the filter are run.
+ */
+public class WriterBenchmark {
+    /**
+     * An operation to measure. Returns something derived from its work so it can't be optimized away.
+     */
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    private static long warmupMillis = 2000;
+    private static long measureMillis = 1000;
+    private static int iterations = 5;
+
+    /**
+     * Results are stored here so the JIT can't discard the work that produced them.
+     */
+    static volatile Object blackhole;
+
+    private static final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        String filter = "";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-warmup":
+                    warmupMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-time":
+                    measureMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    filter = args[i];
+                    break;
+            }
+        }
+
+        Fixtures fixtures = Fixtures.compile();
+        TypeBuilder.INSTANCE.setTypeUtils(fixtures.typeUtils);
+        DocumentationBuilder.INSTANCE.setDocTrees(fixtures.docTrees);
+        NameTable.INSTANCE.build(fixtures.types);
+
+        Map<String, Operation> benchmarks = buildBenchmarks(fixtures);
+
+        System.out.println(String.format("%-36s %14s %14s %16s", "Benchmark", "ops/s", "error", "bytes/op"));
+        for (Map.Entry<String, Operation> benchmark : benchmarks.entrySet()) {
+            if (!benchmark.getKey().contains(filter)) continue;
+            measure(benchmark.getKey(), benchmark.getValue());
+        }
+    }
+
+    static Map<String, Operation> buildBenchmarks(Fixtures fixtures) {
+        TypeElement deepGenerics = fixtures.get("DeepGenerics");
+        TypeElement genericApi = fixtures.get("GenericApi");
+        TypeElement hugeEnum = fixtures.get("HugeEnum");
+        TypeElement documented = fixtures.get("Documented");
+        TypeElement nested = fixtures.get("Nested");
+
+        List<TypeMirror> memberTypes = new ArrayList<>();
+        for (TypeElement type : fixtures.types) {
+            for (TypeElement inner : Fixtures.withNested(type)) {
+                collectMemberTypes(inner, memberTypes);
+            }
+        }
+
+        List<Element> documentedElements = new ArrayList<>();
+        documentedElements.add(documented);
+        documentedElements.addAll(documented.getEnclosedElements());
+        documentedElements.addAll(hugeEnum.getEnclosedElements());
+
+        Map<String, Operation> benchmarks = new LinkedHashMap<>();
+
+        benchmarks.put("TypeBuilder.buildType (cold)", () -> {
+            TypeBuilder.INSTANCE.resetCache();
+            return buildTypes(memberTypes);
+        });
+        benchmarks.put("TypeBuilder.buildType (warm)", () -> buildTypes(memberTypes));
+
+        benchmarks.put("DocumentationBuilder.buildDocs", () -> {
+            int length = 0;
+            for (Element element : documentedElements) {
+                String docs = DocumentationBuilder.buildDocs(element);
+                if (docs != null) length += docs.length();
+            }
+            return length;
+        });
+
+        benchmarks.put("ClassWriter.writeClass DeepGenerics", () -> {
+            HaxePrinter out = new HaxePrinter();
+            ClassWriter.writeClass(out, deepGenerics, 0);
+            return out.getBytes().size();
+        });
+        benchmarks.put("ClassWriter.writeClass Documented", () -> {
+            HaxePrinter out = new HaxePrinter();
+            ClassWriter.writeClass(out, documented, 0);
+            return out.getBytes().size();
+        });
+        benchmarks.put("ClassWriter.writeClass Nested", () -> {
+            HaxePrinter out = new HaxePrinter();
+            ClassWriter.writeClass(out, nested, 0);
+            return out.getBytes().size();
+        });
+        benchmarks.put("InterfaceWriter.writeInterface", () -> {
+            HaxePrinter out = new HaxePrinter();
+            InterfaceWriter.writeInterface(out, genericApi, 0);
+            return out.getBytes().size();
+        });
+        benchmarks.put("EnumWriter.writeEnum HugeEnum", () -> {
+            HaxePrinter out = new HaxePrinter();
+            EnumWriter.writeEnum(out, hugeEnum, 0);
+            return out.getBytes().size();
+        });
+
+        return benchmarks;
+    }
+
+    private static void collectMemberTypes(TypeElement type, List<TypeMirror> result) {
+        for (Element element : type.getEnclosedElements()) {
+            if (element instanceof VariableElement) {
+                result.add(element.asType());
+            } else if (element instanceof ExecutableElement) {
+                ExecutableElement executable = (ExecutableElement) element;
+                result.add(executable.getReturnType());
+                for (VariableElement parameter : executable.getParameters()) {
+                    result.add(parameter.asType());
+                }
+            }
+        }
+    }
+
+    private static int buildTypes(List<TypeMirror> types) {
+        int length = 0;
+        for (TypeMirror type : types) {
+            length += TypeBuilder.buildType(type).length();
+        }
+        return length;
+    }
+
+    private static void measure(String name, Operation operation) throws Exception {
+        long warmupEnd = System.nanoTime() + warmupMillis * 1_000_000;
+        while (System.nanoTime() < warmupEnd) {
+            blackhole = operation.run();
+        }
+
+        double[] rates = new double[iterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long ops = 0;
+            long startBytes = threadBean.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long end = start + measureMillis * 1_000_000;
+            long now;
+            do {
+                blackhole = operation.run();
+                ops++;
+                now = System.nanoTime();
+            } while (now < end);
+            totalBytes += threadBean.getCurrentThreadAllocatedBytes() - startBytes;
+            totalOps += ops;
+            rates[i] = ops * 1e9 / (now - start);
+        }
+
+        double mean = 0;
+        for (double rate : rates) mean += rate;
+        mean /= rates.length;
+
+        double variance = 0;
+        for (double rate : rates) variance += (rate - mean) * (rate - mean);
+        double error = rates.length > 1 ? Math.sqrt(variance / (rates.length - 1)) : 0;
+
+        System.out.println(String.format("%-36s %14.1f %14.1f %16d", name, mean, error, totalBytes / totalOps));
+    }
+}
@@ -0,0 +1,266 @@
+package com.elitemastereric;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import com.elitemastereric.writer.DocumentationBuilder;
+import com.sun.source.util.DocTrees;
+import com.sun.source.util.DocTreePath;
+import com.sun.source.util.JavacTask;
+
+import jdk.javadoc.doclet.Doclet;
+import jdk.javadoc.doclet.Reporter;
+
+/**
+ * Generates Haxe externs from compiled class files, without the Java sources or a javadoc pass.
+ *
+ * The classes are loaded through javac's own class reader, which decodes descriptors and generic
+ * signatures into the same elements and types the doclet gets from sources, so the same writers are used.
+ * Class files carry no doc comments, so no documentation is written.
+ */
+public class ClassFileReader {
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * @param classFiles    The jars or class directories to generate externs for, seperated by the path
+     *                      separator.
+     * @param packages      The packages to include, with their subpackages, seperated by colons.
+     *                      If null, every package is included.
+     * @param classpath     The classpath the class files depend on. May be null.
+     * @param index         If not null, lists the classes in jars from its cache instead of scanning them,
+     *                      both the class files and the classpath.
+     * @param docletOptions Additional options, as they would be passed to the HaxeDoclet.
+     * @return Whether every class was written without errors.
+     */
+    public static boolean run(String classFiles, String output, String packages, String classpath,
+            ClasspathIndex index, List<String> docletOptions) {
+        RunStats.INSTANCE.startPhase("load");
+        Set<String> classNames = new TreeSet<>();
+        for (String entry : classFiles.split(File.pathSeparator)) {
+            try {
+                listClasses(new File(entry), packages, index, classNames);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read class files from " + entry + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Found " + classNames.size() + " classes.");
+
+        String fullClasspath = classpath == null ? classFiles : classFiles + File.pathSeparator + classpath;
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        if (index != null) {
+            fileManager = index.wrap(fileManager);
+        }
+        JavacTask task = (JavacTask) compiler.getTask(null, fileManager, null,
+                List.of("-proc:none", "-parameters", "-classpath", fullClasspath), null, null);
+
+        Elements elementUtils = task.getElements();
+        Set<TypeElement> includedElements = new LinkedHashSet<>();
+        for (String className : classNames) {
+            TypeElement element = elementUtils.getTypeElement(className);
+            if (element == null) {
+                System.out.println("Could not load class: " + className);
+                continue;
+            }
+            addIncluded(element, includedElements);
+        }
+
+        HaxeDoclet doclet = new HaxeDoclet();
+        ConsoleReporter reporter = new ConsoleReporter();
+        doclet.init(Locale.getDefault(), reporter);
+
+        List<String> options = new ArrayList<>();
+        if (output != null) {
+            options.add("-outputdir");
+            options.add(output);
+        }
+        options.addAll(docletOptions);
+        processOptions(doclet, options);
+
+        // There are no doc comments to read.
+        DocumentationBuilder.INSTANCE.setLevel(DocumentationBuilder.Level.NONE);
+
+        boolean succeeded = doclet.generate(includedElements, DocTrees.instance(task), task.getTypes());
+        if (index != null) {
+            System.out.println("Classpath index: " + index.getHits() + " jars cached, " + index.getMisses()
+                    + " indexed.");
+        }
+
+        try {
+            fileManager.close();
+        } catch (IOException e) {
+            System.out.println("Could not close file manager: " + e);
+        }
+        // Like javadoc, a run which reported errors has failed.
+        return succeeded && reporter.errorCount == 0;
+    }
+
+    /**
+     * Adds the canonical names of the top level classes in a jar or class directory.
+     * Nested classes are found through their enclosing classes once loaded.
+     */
+    static void listClasses(File file, String packages, ClasspathIndex index, Set<String> result)
+            throws IOException {
+        if (file.isDirectory()) {
+            listClasses(file, "", packages, result);
+            return;
+        }
+
+        if (index != null) {
+            for (String path : index.listClasses(file)) {
+                addClass(path, packages, result);
+            }
+            return;
+        }
+
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) continue;
+
+                String name = entry.getName();
+                // Multi-release jars keep versioned copies of classes, which are loaded through the base entry.
+                if (name.startsWith("META-INF/")) continue;
+
+                addClass(name, packages, result);
+            }
+        }
+    }
+
+    private static void listClasses(File directory, String prefix, String packages, Set<String> result) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listClasses(file, prefix + file.getName() + "/", packages, result);
+            } else {
+                addClass(prefix + file.getName(), packages, result);
+            }
+        }
+    }
+
+    private static void addClass(String path, String packages, Set<String> result) {
+        if (!path.endsWith(CLASS_SUFFIX)) return;
+
+        String binaryName = path.substring(0, path.length() - CLASS_SUFFIX.length()).replace('/', '.');
+        String simpleName = binaryName.substring(binaryName.lastIndexOf('.') + 1);
+
+        // Nested, local and anonymous classes are all stored as Outer$Inner.
+        if (simpleName.contains("$")) return;
+        if (simpleName.equals("module-info") || simpleName.equals("package-info")) return;
+
+        if (!isIncludedPackage(binaryName, packages)) return;
+
+        result.add(binaryName);
+    }
+
+    /**
+     * Matches javadoc's -subpackages: a package is included along with all of its subpackages.
+     */
+    static boolean isIncludedPackage(String className, String packages) {
+        if (packages == null) return true;
+
+        int lastDot = className.lastIndexOf('.');
+        String packageName = lastDot < 0 ? "" : className.substring(0, lastDot);
+        for (String includedPackage : packages.split(":")) {
+            if (packageName.equals(includedPackage) || packageName.startsWith(includedPackage + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a class and its member classes, if they are visible outside their package like javadoc's
+     * default of public and protected elements.
+     */
+    static void addIncluded(TypeElement element, Set<TypeElement> result) {
+        if (element.getNestingKind() == NestingKind.LOCAL || element.getNestingKind() == NestingKind.ANONYMOUS) {
+            return;
+        }
+        if (!element.getModifiers().contains(Modifier.PUBLIC) && !element.getModifiers().contains(Modifier.PROTECTED)) {
+            return;
+        }
+
+        result.add(element);
+
+        for (Element innerElement : element.getEnclosedElements()) {
+            if (innerElement instanceof TypeElement) {
+                addIncluded((TypeElement) innerElement, result);
+            }
+        }
+    }
+
+    /**
+     * Passes options to the doclet the way javadoc would.
+     */
+    static void processOptions(HaxeDoclet doclet, List<String> options) {
+        for (int i = 0; i < options.size(); i++) {
+            String name = options.get(i);
+            Doclet.Option option = null;
+            for (Doclet.Option candidate : doclet.getSupportedOptions()) {
+                if (candidate.getNames().contains(name)) {
+                    option = candidate;
+                    break;
+                }
+            }
+            if (option == null) {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            }
+
+            int count = option.getArgumentCount();
+            if (i + count >= options.size()) {
+                throw new IllegalArgumentException(name + " requires " + count + " argument(s)");
+            }
+            List<String> arguments = options.subList(i + 1, i + 1 + count);
+            if (!option.process(name, arguments)) {
+                throw new IllegalArgumentException("Invalid value for " + name + ": " + arguments);
+            }
+            i += count;
+        }
+    }
+
+    /**
+     * Reports problems to the console, since there is no javadoc tool to report them through.
+     */
+    private static class ConsoleReporter implements Reporter {
+        private int errorCount = 0;
+
+        @Override
+        public void print(Diagnostic.Kind kind, String message) {
+            if (kind == Diagnostic.Kind.ERROR) errorCount++;
+            System.err.println(kind.toString().toLowerCase(Locale.ROOT) + ": " + message);
+        }
+
+        @Override
+        public void print(Diagnostic.Kind kind, DocTreePath path, String message) {
+            print(kind, message);
+        }
+
+        @Override
+        public void print(Diagnostic.Kind kind, Element element, String message) {
+            print(kind, element + ": " + message);
+        }
+    }
+}
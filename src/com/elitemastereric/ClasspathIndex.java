@@ -0,0 +1,583 @@
+package com.elitemastereric;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * A cache of the classes in each jar, so jars which haven't changed don't have to be scanned again.
+ *
+ * Each jar gets a small binary index file in the cache directory, named after a hash of the jar's path. The
+ * index is used as it is while the jar's size and modification time match those recorded in it, so an
+ * unchanged jar is never read. Otherwise the jar's contents are hashed and compared with the hash recorded in
+ * the index, so a jar which was only touched or copied again keeps its index, and anything else is scanned.
+ *
+ * The index is used both to list the classes given with {@code -classfiles}, and through {@link #wrap}, to
+ * answer javac's lookups on the classpath. javac then only opens the jars it actually loads classes from,
+ * instead of opening and listing every jar on the classpath.
+ *
+ * The format is: the magic number, the format version, the jar's size and modification time, the hash of its
+ * contents, the number of packages, then for each package its directory name, the number of classes, and
+ * each class's file name without ".class". Strings are stored as a length followed by UTF-8 bytes.
+ */
+public class ClasspathIndex {
+    private static final int MAGIC = 0x48584349; // "HXCI"
+    private static final int VERSION = 3;
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final File cacheDir;
+
+    /**
+     * The classes of each jar read so far, by package directory. Jars are only looked up once per run.
+     */
+    private final Map<File, Map<String, List<String>>> jars = new HashMap<>();
+
+    /**
+     * The contents of an index file.
+     */
+    private static class Index {
+        final long size;
+        final long modified;
+        final String contentHash;
+        final Map<String, List<String>> classesByPackage;
+
+        Index(long size, long modified, String contentHash, Map<String, List<String>> classesByPackage) {
+            this.size = size;
+            this.modified = modified;
+            this.contentHash = contentHash;
+            this.classesByPackage = classesByPackage;
+        }
+    }
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public ClasspathIndex(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @return The path of every class file in the jar, like "net/package/Outer$Inner.class".
+     *         Versioned classes of multi-release jars and other files under META-INF are left out.
+     */
+    public List<String> listClasses(File jar) throws IOException {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : getClassesByPackage(jar).entrySet()) {
+            for (String className : entry.getValue()) {
+                result.add(toPath(entry.getKey(), className));
+            }
+        }
+        return result;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return A file manager which lists the classes on the classpath from their indexes, and only opens a jar
+     *         once a class is read from it. Everything else is passed to the given file manager.
+     */
+    public StandardJavaFileManager wrap(StandardJavaFileManager fileManager) {
+        return new IndexedFileManager(fileManager);
+    }
+
+    /**
+     * @return The classes in the jar, grouped by package directory, from its index if it has one.
+     */
+    private synchronized Map<String, List<String>> getClassesByPackage(File jar) throws IOException {
+        File key = jar.getAbsoluteFile();
+        Map<String, List<String>> result = jars.get(key);
+        if (result != null) return result;
+
+        Path indexFile = getIndexFile(key).toPath();
+        Index index = null;
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                index = read(indexFile);
+            } catch (IOException e) {
+                // A damaged index is rebuilt below.
+            }
+        }
+
+        long size = key.length();
+        long modified = key.lastModified();
+        if (index != null && index.size == size && index.modified == modified) {
+            hits.incrementAndGet();
+            result = index.classesByPackage;
+        } else {
+            String contentHash = hashContents(key);
+            if (index != null && index.contentHash.equals(contentHash)) {
+                hits.incrementAndGet();
+                result = index.classesByPackage;
+            } else {
+                misses.incrementAndGet();
+                result = scan(key);
+            }
+            write(indexFile, new Index(size, modified, contentHash, result));
+        }
+        jars.put(key, result);
+        return result;
+    }
+
+    File getIndexFile(File jar) {
+        String hash = IncrementalManifest.hash(jar.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        return new File(cacheDir, hash.substring(0, 32) + ".idx");
+    }
+
+    private static String hashContents(File jar) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(jar.toPath()), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Reads the class files in a jar, grouped by package directory.
+     */
+    static Map<String, List<String>> scan(File jar) throws IOException {
+        Map<String, List<String>> result = new TreeMap<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || !name.endsWith(CLASS_SUFFIX) || name.startsWith("META-INF/")) continue;
+
+                int slash = name.lastIndexOf('/');
+                String packageDir = slash < 0 ? "" : name.substring(0, slash);
+                String className = name.substring(slash + 1, name.length() - CLASS_SUFFIX.length());
+                result.computeIfAbsent(packageDir, k -> new ArrayList<>()).add(className);
+            }
+        }
+        for (List<String> classes : result.values()) {
+            classes.sort(null);
+        }
+        return result;
+    }
+
+    /**
+     * Reads an index, checking every count and length against what is left of the file,
+     * so a damaged index fails with an IOException instead of allocating whatever it claims.
+     */
+    private static Index read(Path indexFile) throws IOException {
+        byte[] bytes = Files.readAllBytes(indexFile);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a classpath index: " + indexFile);
+        }
+        long size = in.readLong();
+        long modified = in.readLong();
+        String contentHash = readString(in);
+
+        Map<String, List<String>> result = new TreeMap<>();
+        int packageCount = readCount(in);
+        for (int i = 0; i < packageCount; i++) {
+            String packageDir = readString(in);
+            int classCount = readCount(in);
+            List<String> classes = new ArrayList<>(classCount);
+            for (int j = 0; j < classCount; j++) {
+                classes.add(readString(in));
+            }
+            result.put(packageDir, classes);
+        }
+        if (in.available() > 0) {
+            throw new IOException("Trailing data in classpath index: " + indexFile);
+        }
+        return new Index(size, modified, contentHash, result);
+    }
+
+    /**
+     * Reads a count of entries, each of which takes at least four bytes.
+     */
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > in.available() / 4) {
+            throw new IOException("Bad count in classpath index: " + count);
+        }
+        return count;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Bad string length in classpath index: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an index next to its final name and moves it into place, so readers never see half of one.
+     * Each writer uses its own temporary file, as shards may index the same jar at once.
+     */
+    private void write(Path indexFile, Index index) throws IOException {
+        Files.createDirectories(indexFile.getParent());
+        Path temp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(index.size);
+                out.writeLong(index.modified);
+                writeString(out, index.contentHash);
+                out.writeInt(index.classesByPackage.size());
+                for (Map.Entry<String, List<String>> entry : index.classesByPackage.entrySet()) {
+                    writeString(out, entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (String className : entry.getValue()) {
+                        writeString(out, className);
+                    }
+                }
+            }
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String toPath(String packageDir, String className) {
+        if (packageDir.isEmpty()) return className + CLASS_SUFFIX;
+        return packageDir + "/" + className + CLASS_SUFFIX;
+    }
+
+    /**
+     * A class on the classpath, in a jar or a class directory.
+     */
+    private static class ClassFile implements JavaFileObject {
+        final String binaryName;
+        /**
+         * The class file, or the jar holding it.
+         */
+        final File file;
+        /**
+         * The path of the class in the jar, or null for a class file in a directory.
+         */
+        final String path;
+        final IndexedFileManager fileManager;
+
+        ClassFile(String binaryName, File file, String path, IndexedFileManager fileManager) {
+            this.binaryName = binaryName;
+            this.file = file;
+            this.path = path;
+            this.fileManager = fileManager;
+        }
+
+        @Override
+        public Kind getKind() {
+            return Kind.CLASS;
+        }
+
+        @Override
+        public boolean isNameCompatible(String simpleName, Kind kind) {
+            return kind == Kind.CLASS && binaryName.substring(binaryName.lastIndexOf('.') + 1).equals(simpleName);
+        }
+
+        @Override
+        public NestingKind getNestingKind() {
+            return null;
+        }
+
+        @Override
+        public Modifier getAccessLevel() {
+            return null;
+        }
+
+        @Override
+        public URI toUri() {
+            if (path == null) return file.toURI();
+            try {
+                return new URI("jar", file.getAbsoluteFile().toURI() + "!/" + path, null);
+            } catch (URISyntaxException e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+
+        @Override
+        public String getName() {
+            return path == null ? file.getPath() : file.getPath() + "(" + path + ")";
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            if (path == null) return Files.newInputStream(file.toPath());
+
+            ZipFile zip = fileManager.openJar(file);
+            ZipEntry entry = zip.getEntry(path);
+            if (entry == null) throw new FileNotFoundException(getName());
+            return zip.getInputStream(entry);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Reader openReader(boolean ignoreEncodingErrors) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Writer openWriter() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getLastModified() {
+            return file.lastModified();
+        }
+
+        @Override
+        public boolean delete() {
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ClassFile && ((ClassFile) other).file.equals(file)
+                    && Objects.equals(((ClassFile) other).path, path);
+        }
+
+        @Override
+        public int hashCode() {
+            return file.hashCode() * 31 + Objects.hashCode(path);
+        }
+
+        @Override
+        public String toString() {
+            return getName();
+        }
+    }
+
+    /**
+     * Answers javac's listings of the classpath from the indexes. The jars are opened once a class is read.
+     */
+    private class IndexedFileManager extends ForwardingJavaFileManager<StandardJavaFileManager>
+            implements StandardJavaFileManager {
+        private final Map<File, ZipFile> openJars = new HashMap<>();
+
+        IndexedFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds,
+                boolean recurse) throws IOException {
+            if (location != StandardLocation.CLASS_PATH) {
+                return super.list(location, packageName, kinds, recurse);
+            }
+
+            List<JavaFileObject> result = new ArrayList<>();
+            if (!kinds.contains(JavaFileObject.Kind.CLASS)) return result;
+
+            Iterable<? extends File> classpath = fileManager.getLocation(StandardLocation.CLASS_PATH);
+            if (classpath == null) return result;
+
+            String packageDir = packageName.replace('.', '/');
+            for (File entry : classpath) {
+                if (entry.isDirectory()) {
+                    listDirectory(entry, packageDir, recurse, result);
+                } else if (entry.isFile()) {
+                    listJar(entry, packageDir, recurse, result);
+                }
+            }
+            return result;
+        }
+
+        private void listJar(File jar, String packageDir, boolean recurse, List<JavaFileObject> result)
+                throws IOException {
+            Map<String, List<String>> classesByPackage = getClassesByPackage(jar);
+            if (!recurse) {
+                addJarClasses(jar, packageDir, classesByPackage.get(packageDir), result);
+                return;
+            }
+            for (Map.Entry<String, List<String>> entry : classesByPackage.entrySet()) {
+                String dir = entry.getKey();
+                if (packageDir.isEmpty() || dir.equals(packageDir) || dir.startsWith(packageDir + "/")) {
+                    addJarClasses(jar, dir, entry.getValue(), result);
+                }
+            }
+        }
+
+        private void addJarClasses(File jar, String packageDir, List<String> classes, List<JavaFileObject> result) {
+            if (classes == null) return;
+
+            String packagePrefix = packageDir.isEmpty() ? "" : packageDir.replace('/', '.') + ".";
+            for (String className : classes) {
+                result.add(new ClassFile(packagePrefix + className, jar, toPath(packageDir, className), this));
+            }
+        }
+
+        private void listDirectory(File root, String packageDir, boolean recurse, List<JavaFileObject> result) {
+            File dir = packageDir.isEmpty() ? root : new File(root, packageDir);
+            File[] files = dir.listFiles();
+            if (files == null) return;
+
+            String packagePrefix = packageDir.isEmpty() ? "" : packageDir.replace('/', '.') + ".";
+            for (File file : files) {
+                String name = file.getName();
+                if (file.isDirectory()) {
+                    if (recurse) {
+                        listDirectory(root, packageDir.isEmpty() ? name : packageDir + "/" + name, true, result);
+                    }
+                } else if (name.endsWith(CLASS_SUFFIX)) {
+                    String binaryName = packagePrefix + name.substring(0, name.length() - CLASS_SUFFIX.length());
+                    result.add(new ClassFile(binaryName, file, null, this));
+                }
+            }
+        }
+
+        synchronized ZipFile openJar(File jar) throws IOException {
+            ZipFile zip = openJars.get(jar);
+            if (zip == null) {
+                zip = new ZipFile(jar);
+                openJars.put(jar, zip);
+            }
+            return zip;
+        }
+
+        @Override
+        public String inferBinaryName(Location location, JavaFileObject file) {
+            if (file instanceof ClassFile) return ((ClassFile) file).binaryName;
+            return super.inferBinaryName(location, file);
+        }
+
+        @Override
+        public boolean isSameFile(FileObject a, FileObject b) {
+            if (a instanceof ClassFile || b instanceof ClassFile) return a.equals(b);
+            return super.isSameFile(a, b);
+        }
+
+        @Override
+        public boolean contains(Location location, FileObject file) throws IOException {
+            if (file instanceof ClassFile) return location == StandardLocation.CLASS_PATH;
+            return super.contains(location, file);
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                for (ZipFile zip : openJars.values()) {
+                    zip.close();
+                }
+                openJars.clear();
+            }
+            super.close();
+        }
+
+        @Override
+        public Iterable<? extends JavaFileObject> getJavaFileObjectsFromFiles(Iterable<? extends File> files) {
+            return fileManager.getJavaFileObjectsFromFiles(files);
+        }
+
+        @Override
+        public Iterable<? extends JavaFileObject> getJavaFileObjects(File... files) {
+            return fileManager.getJavaFileObjects(files);
+        }
+
+        @Override
+        public Iterable<? extends JavaFileObject> getJavaFileObjectsFromStrings(Iterable<String> names) {
+            return fileManager.getJavaFileObjectsFromStrings(names);
+        }
+
+        @Override
+        public Iterable<? extends JavaFileObject> getJavaFileObjects(String... names) {
+            return fileManager.getJavaFileObjects(names);
+        }
+
+        @Override
+        public void setLocation(Location location, Iterable<? extends File> files) throws IOException {
+            fileManager.setLocation(location, files);
+        }
+
+        @Override
+        public Iterable<? extends File> getLocation(Location location) {
+            return fileManager.getLocation(location);
+        }
+
+        @Override
+        public Iterable<? extends JavaFileObject> getJavaFileObjectsFromPaths(Collection<? extends Path> paths) {
+            return fileManager.getJavaFileObjectsFromPaths(paths);
+        }
+
+        @Override
+        public void setLocationFromPaths(Location location, Collection<? extends Path> paths) throws IOException {
+            fileManager.setLocationFromPaths(location, paths);
+        }
+
+        @Override
+        public Iterable<? extends Path> getLocationAsPaths(Location location) {
+            return fileManager.getLocationAsPaths(location);
+        }
+
+        @Override
+        public Path asPath(FileObject file) {
+            if (file instanceof ClassFile && ((ClassFile) file).path == null) return ((ClassFile) file).file.toPath();
+            return fileManager.asPath(file);
+        }
+    }
+}
@@ -62,11 +62,11 @@ public class ElementUtils {
     }
 
     public static boolean isNullable(Element element) {
-        return hasAnnotation(element, org.jetbrains.annotations.Nullable.class);
+        return NullabilityResolver.INSTANCE.isNullable(element);
     }
 
     public static boolean isNullable(TypeMirror mirror) {
-        return hasAnnotation(mirror, org.jetbrains.annotations.Nullable.class);
+        return NullabilityResolver.INSTANCE.isNullable(mirror);
     }
 
     public static boolean isConstructor(ExecutableElement element) {
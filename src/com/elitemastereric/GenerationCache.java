@@ -0,0 +1,241 @@
+package com.elitemastereric;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stores the Haxe files of whole runs in a cache directory, so a run with the same inputs can copy them
+ * instead of running javadoc.
+ *
+ * Entries are keyed on a hash of the generator version, the options which affect the output, and the
+ * contents of every source and classpath file. Paths are left out of the key, so machines with the inputs
+ * in different places share entries, and the cache directory can be on a shared drive.
+ *
+ * A run which misses the cache writes to a staging directory inside the cache, which is then renamed to
+ * its entry in one step. Other runs never see a half written entry, and when two runs publish the same
+ * entry at once, one of them simply keeps the other's.
+ */
+public class GenerationCache {
+    /**
+     * The options which don't change the Haxe files, and the number of arguments each takes.
+     * The source and classpath are included in the key by their contents instead.
+     */
+    private static final Map<String, Integer> IGNORED_OPTIONS = Map.ofEntries(
+            Map.entry("-source", 1),
+            Map.entry("-classpath", 1),
+            Map.entry("-output", 1),
+            Map.entry("-cache", 1),
+            Map.entry("-classpath-cache", 1),
+            Map.entry("-threads", 1),
+            Map.entry("-io-threads", 1),
+            Map.entry("-shards", 1),
+            Map.entry("-package-group-size", 1),
+            Map.entry("-parse-threads", 1),
+            Map.entry("-write-if-changed", 0),
+            Map.entry("-stats", 1),
+            Map.entry("-unhandled-report", 1),
+            Map.entry("-max-unhandled", 1));
+
+    private static final String FILES_DIR = "files";
+    private static final String UNHANDLED_REPORT = "unhandled.json";
+
+    private final File cacheDir;
+    private final String key;
+
+    private File stagingDir = null;
+
+    public GenerationCache(File cacheDir, String key) {
+        this.cacheDir = cacheDir;
+        this.key = key;
+    }
+
+    /**
+     * @param args The arguments Main was started with.
+     */
+    public static String buildKey(String[] args, String sourcePath, String classpath) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, "version=" + Main.VERSION);
+
+        for (int i = 0; i < args.length; i++) {
+            Integer argumentCount = IGNORED_OPTIONS.get(args[i]);
+            if (argumentCount != null) {
+                i += argumentCount;
+                continue;
+            }
+            update(digest, "arg=" + args[i]);
+        }
+
+        // Every source on the source path can affect the output, not just those in the packages.
+        String[] roots = sourcePath.split(File.pathSeparator);
+        for (int i = 0; i < roots.length; i++) {
+            update(digest, "source=" + i);
+            hashTree(digest, Path.of(roots[i]), true);
+        }
+
+        for (String entry : classpath.split(File.pathSeparator)) {
+            update(digest, "classpath");
+            hashTree(digest, Path.of(entry), false);
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Adds the relative path and contents of every file in a directory, or the contents of a single file.
+     *
+     * @param sourcesOnly Whether to only include Java sources.
+     */
+    private static void hashTree(MessageDigest digest, Path root, boolean sourcesOnly) throws IOException {
+        if (Files.isRegularFile(root)) {
+            hashFile(digest, root);
+            return;
+        }
+        if (!Files.isDirectory(root)) {
+            update(digest, "missing");
+            return;
+        }
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> !sourcesOnly || path.getFileName().toString().endsWith(".java"))
+                    .sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            update(digest, "file=" + root.relativize(file).toString().replace(File.separatorChar, '/'));
+            hashFile(digest, file);
+        }
+    }
+
+    private static void hashFile(MessageDigest digest, Path file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        update(digest, "size=" + Files.size(file));
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    File getEntryDir() {
+        return new File(new File(cacheDir, key.substring(0, 2)), key);
+    }
+
+    public boolean isCached() {
+        return new File(getEntryDir(), FILES_DIR).isDirectory();
+    }
+
+    /**
+     * Creates an empty staging directory for this run to write to. It is deleted when the JVM exits,
+     * unless it was published.
+     *
+     * @return The directory to write the Haxe files to.
+     */
+    public File createStagingDir() throws IOException {
+        stagingDir = new File(cacheDir, ".staging-" + UUID.randomUUID());
+        File files = new File(stagingDir, FILES_DIR);
+        Files.createDirectories(files.toPath());
+
+        File dir = stagingDir;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteRecursively(dir)));
+        return files;
+    }
+
+    /**
+     * @return Where the staged run's unhandled construct report goes.
+     */
+    public File getStagingReport() {
+        return new File(stagingDir, UNHANDLED_REPORT);
+    }
+
+    /**
+     * @return The unhandled construct report of the cached run.
+     */
+    public File getReport() {
+        return new File(getEntryDir(), UNHANDLED_REPORT);
+    }
+
+    /**
+     * Moves the staging directory into place as this key's entry.
+     */
+    public void publish() throws IOException {
+        File entryDir = getEntryDir();
+        Files.createDirectories(entryDir.getParentFile().toPath());
+        try {
+            Files.move(stagingDir.toPath(), entryDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            throw new IOException("The cache directory doesn't support atomic renames: " + cacheDir);
+        } catch (IOException e) {
+            // Another run published the same entry first, and its files are the same as ours.
+            if (!isCached()) throw e;
+            deleteRecursively(stagingDir);
+        }
+    }
+
+    /**
+     * Copies the files of the cached run, or of the staged run if it wasn't published, to the output directory.
+     *
+     * @param writeIfChanged If true, files already in the output directory with the same contents are left
+     *                       alone.
+     * @return The number of files copied.
+     */
+    public int restore(File output, boolean writeIfChanged, boolean fromStaging) throws IOException {
+        Path from = new File(fromStaging ? stagingDir : getEntryDir(), FILES_DIR).toPath();
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(from)) {
+            files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        int copied = 0;
+        for (Path file : files) {
+            Path target = output.toPath().resolve(from.relativize(file));
+            if (writeIfChanged && Files.exists(target) && Files.mismatch(file, target) == -1) continue;
+
+            Files.createDirectories(target.getParent());
+            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            copied++;
+        }
+        return copied;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            Arrays.stream(children).forEach(GenerationCache::deleteRecursively);
+        }
+        file.delete();
+    }
+}
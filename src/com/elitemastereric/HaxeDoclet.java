@@ -1,18 +1,54 @@
 package com.elitemastereric;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
 
 import com.elitemastereric.writer.BaseWriter;
+import com.elitemastereric.writer.ByteSink;
+import com.elitemastereric.writer.ChangedFileOutputStream;
+import com.elitemastereric.writer.HaxeArchive;
 import com.elitemastereric.writer.DocumentationBuilder;
+import com.elitemastereric.writer.HaxePrinter;
+import com.elitemastereric.writer.NameTable;
 import com.elitemastereric.writer.TypeBuilder;
+import com.elitemastereric.writer.TypeHierarchy;
+import com.elitemastereric.writer.UnhandledReport;
+import com.sun.source.util.DocTrees;
+import com.sun.source.util.TreePath;
 
 import jdk.javadoc.doclet.Doclet;
 import jdk.javadoc.doclet.DocletEnvironment;
@@ -22,10 +58,85 @@ import jdk.javadoc.doclet.Reporter;
  * A Doclet that generates Haxe code from Java code.
  */
 public class HaxeDoclet implements Doclet {
+    /**
+     * The name file I/O is recorded under in the run statistics.
+     */
+    private static final String FILE_IO = "FileIO";
+
+    /**
+     * How many rendered files can wait to be written before rendering is held up.
+     */
+    private static final int WRITE_BEHIND_CAPACITY = 256;
+
+    /**
+     * How many types each rendering thread may have rendered or in progress ahead of the one being written,
+     * so the rendered files held in memory don't grow with the size of the output.
+     */
+    private static final int RENDER_AHEAD_PER_THREAD = 4;
+
+    /**
+     * Held while generating, since the writers are shared by every doclet in the JVM.
+     */
+    private static final Object GENERATE_LOCK = new Object();
+
+    /**
+     * The number of types written by runs since the count was last reset.
+     */
+    private static final AtomicInteger writtenTypeCount = new AtomicInteger();
+
     Reporter reporter;
 
     String outputDir = null;
 
+    int threads = 1;
+
+    boolean writeIfChanged = false;
+
+    /**
+     * The classpath to key the incremental manifest on, or null if incremental mode is off.
+     */
+    String incrementalClasspath = null;
+
+    /**
+     * The file to write run statistics to, or null if they aren't collected.
+     */
+    String statsFile = null;
+
+    /**
+     * The zip file to write every Haxe file into, or null to write them to the output directory.
+     */
+    String outputArchive = null;
+
+    /**
+     * If set, the output archive is laid out as a haxelib with this name.
+     */
+    String haxelibName = null;
+
+    /**
+     * The number of threads writing rendered files to disk, or 0 to write them on the rendering thread.
+     */
+    int ioThreads = 0;
+
+    /**
+     * The qualified names of the types to start from, if only the types they need are written.
+     */
+    Set<String> roots = null;
+
+    /**
+     * The archive being written during a run, if there is one.
+     */
+    private HaxeArchive archive = null;
+
+    /**
+     * The queue rendered files are written through during a run, if writing is done in the background.
+     */
+    private WriteBehindQueue writeBehind = null;
+
+    /**
+     * The elements which failed to write in this run.
+     */
+    private final Set<TypeElement> failedElements = new HashSet<>();
+
     @Override
     public void init(Locale locale, Reporter reporter) {
         System.out.println("Initializing doclet...");
@@ -53,6 +164,147 @@ public class HaxeDoclet implements Doclet {
 
                     outputDir = arguments.get(0);
 
+                    return true;
+                }
+            },
+            new HaxeDocletOption("-threads", true, "The number of threads to render Haxe files with.", "threads") {
+                @Override
+                public boolean process(String value, List<String> arguments) {
+                    if (arguments.size() < 1) {
+                        return false;
+                    }
+
+                    try {
+                        threads = Integer.parseInt(arguments.get(0));
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+
+                    return threads > 0;
+                }
+            },
+            new HaxeDocletOption("-io-threads", true,
+                    "The number of threads to write rendered files to disk with, in the background.", "threads") {
+                @Override
+                public boolean process(String value, List<String> arguments) {
+                    if (arguments.size() < 1) {
+                        return false;
+                    }
+
+                    try {
+                        ioThreads = Integer.parseInt(arguments.get(0));
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+
+                    return ioThreads >= 0;
+                }
+            },
+            new HaxeDocletOption("-write-if-changed", false,
+                    "Only write Haxe files whose contents changed, so unchanged files keep their modification time.",
+                    "") {
+                @Override
+                public boolean process(String value, List<String> arguments) {
+                    writeIfChanged = true;
+
+                    return true;
+                }
+            },
+            new HaxeDocletOption("-docs", true, "How much documentation to write: none, summary or full.", "level") {
+                @Override
+                public boolean process(String value, List<String> arguments) {
+                    if (arguments.size() < 1) {
+                        return false;
+                    }
+
+                    try {
+                        DocumentationBuilder.INSTANCE
+                                .setLevel(DocumentationBuilder.Level.valueOf(arguments.get(0).toUpperCase(Locale.ROOT)));
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+
+                    return true;
+                }
+            },
+            new HaxeDocletOption("-nullable-annotations", true,
+                    "The qualified names of the annotations which mark types as nullable, seperated by colons.",
+                    "annotations") {
+                @Override
+                public boolean process(String value, List<String> arguments) {
+                    if (arguments.size() < 1 || arguments.get(0).isEmpty()) {
+                        return false;
+                    }
+
+                    NullabilityResolver.INSTANCE.setAnnotations(new HashSet<>(List.of(arguments.get(0).split(":"))));
+                    return true;
+                }
+            },
+            new HaxeDocletOption("-incremental", true,
+                    "Only rewrite Haxe files whose Java source changed since the last run. Requires -outputdir.",
+                    "classpath") {
+                @Override
+                public boolean process(String value, List<String> arguments) {
+                    if (arguments.size() < 1) {
+                        return false;
+                    }
+
+                    incrementalClasspath = arguments.get(0);
+
+                    return true;
+                }
+            },
+            new HaxeDocletOption("-stats", true, "Write timing and memory statistics for the run to a JSON file.",
+                    "file") {
+                @Override
+                public boolean process(String value, List<String> arguments) {
+                    if (arguments.size() < 1) {
+                        return false;
+                    }
+
+                    statsFile = arguments.get(0);
+                    RunStats.INSTANCE.setEnabled(true);
+
+                    return true;
+                }
+            },
+            new HaxeDocletOption("-output-archive", true,
+                    "Write every Haxe file into a single zip file instead of the output directory.", "file") {
+                @Override
+                public boolean process(String value, List<String> arguments) {
+                    if (arguments.size() < 1) {
+                        return false;
+                    }
+
+                    outputArchive = arguments.get(0);
+
+                    return true;
+                }
+            },
+            new HaxeDocletOption("-haxelib", true,
+                    "Lay out the output archive as a haxelib with the given name. Requires -output-archive.", "name") {
+                @Override
+                public boolean process(String value, List<String> arguments) {
+                    if (arguments.size() < 1) {
+                        return false;
+                    }
+
+                    haxelibName = arguments.get(0);
+
+                    return true;
+                }
+            },
+            new HaxeDocletOption("-roots", true,
+                    "Only write these types, seperated by colons, and the types their signatures refer to.",
+                    "types") {
+                @Override
+                public boolean process(String value, List<String> arguments) {
+                    if (arguments.size() < 1 || arguments.get(0).isEmpty()) {
+                        return false;
+                    }
+
+                    roots = new LinkedHashSet<>(List.of(arguments.get(0).split(":")));
+
                     return true;
                 }
             });
@@ -68,36 +320,588 @@ public class HaxeDoclet implements Doclet {
         System.out.println("Running doclet...");
 
         // Tell the user if we are printing to a file or the console.
-        System.out.println(outputDir != null
-                ? "Outputting to: " + outputDir
-                : "Outputting to System.out");
+        System.out.println(outputArchive != null
+                ? "Outputting to archive: " + outputArchive
+                : outputDir != null
+                        ? "Outputting to: " + outputDir
+                        : "Outputting to System.out");
 
         // Retrieve the list of classes and interfaces we are processing.
         Set<TypeElement> includedElements = environment.getIncludedElements().stream()
                 .filter(e -> e instanceof TypeElement && environment.isIncluded(e)) // Filter to types.
                 .map(e -> (TypeElement) e).collect(Collectors.toSet()); // Convert back to set.
-        
+
+        return generate(includedElements, environment.getDocTrees(), environment.getTypeUtils());
+    }
+
+    /**
+     * Writes the given type elements as Haxe.
+     * Used by javadoc through {@link #run(DocletEnvironment)}, and directly when reading class files.
+     *
+     * @param docTrees  The documentation trees of the elements.
+     * @param typeUtils The type utilities of the compiler the elements came from.
+     */
+    boolean generate(Set<TypeElement> includedElements, DocTrees docTrees, Types typeUtils) {
+        // The writers share their state, so javadoc tasks running in parallel take turns here.
+        synchronized (GENERATE_LOCK) {
+            return generateLocked(includedElements, docTrees, typeUtils);
+        }
+    }
+
+    private boolean generateLocked(Set<TypeElement> includedElements, DocTrees docTrees, Types typeUtils) {
+        RunStats.INSTANCE.startPhase("setup");
+
         // Retrieve the documentation trees for the classes and interfaces we are processing.
-        DocumentationBuilder.INSTANCE.setDocTrees(environment.getDocTrees());
-        TypeBuilder.INSTANCE.setTypeUtils(environment.getTypeUtils());
+        DocumentationBuilder.INSTANCE.setDocTrees(docTrees);
+        TypeBuilder.INSTANCE.setTypeUtils(typeUtils);
+        TypeBuilder.INSTANCE.resetCache();
+        NullabilityResolver.INSTANCE.resetCache();
+        DocumentationBuilder.INSTANCE.resetCache();
+
+        // Work out what each type will be called in Haxe, before anything refers to them.
+        NameTable.INSTANCE.build(includedElements);
+
+        if (roots != null) {
+            includedElements = selectReachable(includedElements);
+        }
+
+        // Walk the type hierarchies here, so the writers don't walk them again on every thread.
+        TypeHierarchy.INSTANCE.build(includedElements, typeUtils);
 
         // Tell the user how many classes and interfaces we are processing.
         System.out.println(
                 "Processing " + includedElements.size() + " included elements (class, enum, interface, or record).");
 
+        Set<TypeElement> elementsToWrite = includedElements;
+
+        IncrementalManifest manifest = null;
+        Map<String, List<TypeElement>> elementsBySource = null;
+        Map<String, String> sourceHashes = new HashMap<>();
+        if (incrementalClasspath != null && outputDir != null) {
+            RunStats.INSTANCE.startPhase("incremental");
+            try {
+                manifest = IncrementalManifest.load(outputDir, incrementalClasspath, getOutputOptions());
+                elementsBySource = groupBySource(docTrees, includedElements);
+                elementsToWrite = skipUnchanged(manifest, elementsBySource, sourceHashes);
+            } catch (IOException e) {
+                reporter.print(Diagnostic.Kind.WARNING, "Could not read incremental manifest, writing everything: " + e);
+                manifest = null;
+                elementsToWrite = includedElements;
+            }
+
+            System.out.println("Skipping " + (includedElements.size() - elementsToWrite.size())
+                    + " elements with unchanged sources.");
+        }
+
+        // Inherited docs come from types which aren't written, so they are rendered before the writers start.
+        RunStats.INSTANCE.startPhase("inheritdoc");
+        DocumentationBuilder.INSTANCE.resolveInheritedDocs(elementsToWrite);
+
+        ChangedFileOutputStream.resetCounts();
+        BaseWriter.resetDirectoryCache();
+
+        if (outputArchive != null) {
+            elementsToWrite = orderForArchive(elementsToWrite);
+            try {
+                archive = new HaxeArchive(new File(outputArchive), haxelibName);
+            } catch (IOException e) {
+                reporter.print(Diagnostic.Kind.ERROR, "Could not create output archive: " + e);
+                return false;
+            }
+        }
+
+        // Printing to the console has to stay in order, so it is never done in the background.
+        if (ioThreads > 0 && (outputDir != null || archive != null)) {
+            // Archive entries are written one after another, so they only get one thread.
+            int writerThreads = archive != null ? 1 : ioThreads;
+            writeBehind = new WriteBehindQueue(writerThreads, WRITE_BEHIND_CAPACITY, this::writeOut);
+        }
+
+        if (threads > 1) {
+            writeParallel(docTrees, elementsToWrite);
+        } else {
+            writeSequential(elementsToWrite);
+        }
+
+        if (writeBehind != null) {
+            try {
+                for (WriteBehindQueue.Failure failure : writeBehind.close()) {
+                    reportError(failure.element, failure.error);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reporter.print(Diagnostic.Kind.ERROR, "Interrupted while writing files");
+            }
+            writeBehind = null;
+        }
+
+        writtenTypeCount.addAndGet(elementsToWrite.size());
+
+        if (archive != null) {
+            try {
+                archive.close();
+                System.out.println("Wrote " + archive.getEntryCount() + " files to: " + outputArchive);
+            } catch (IOException e) {
+                reporter.print(Diagnostic.Kind.ERROR, "Could not write output archive: " + e);
+            }
+            archive = null;
+        }
+
+        if (writeIfChanged && outputDir != null) {
+            System.out.println("Wrote " + ChangedFileOutputStream.getWrittenCount() + " files, "
+                    + ChangedFileOutputStream.getUnchangedCount() + " unchanged.");
+        }
+
+        System.out.println("Type cache: " + TypeBuilder.INSTANCE.getCacheHits() + " hits, "
+                + TypeBuilder.INSTANCE.getCacheMisses() + " misses.");
+
+        UnhandledReport.INSTANCE.resolvePositions(docTrees);
+
+        if (manifest != null) {
+            RunStats.INSTANCE.startPhase("manifest");
+            saveManifest(docTrees, manifest, elementsBySource, sourceHashes);
+        }
+
+        if (statsFile != null) {
+            try {
+                RunStats.INSTANCE.write(new File(statsFile));
+                System.out.println("Wrote statistics to: " + statsFile);
+            } catch (IOException e) {
+                reporter.print(Diagnostic.Kind.WARNING, "Could not write statistics: " + e);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The options which change what is written, for the incremental manifest's key.
+     *         Any new option which changes the Haxe files belongs here.
+     */
+    List<String> getOutputOptions() {
+        List<String> result = new ArrayList<>();
+        result.add("-docs=" + DocumentationBuilder.INSTANCE.getLevel());
+        result.add("-nullable-annotations=" + new TreeSet<>(NullabilityResolver.INSTANCE.getAnnotations()));
+        result.add("-roots=" + (roots == null ? "" : new TreeSet<>(roots)));
+        return result;
+    }
+
+    /**
+     * @return The included elements which the root types need.
+     */
+    private Set<TypeElement> selectReachable(Set<TypeElement> includedElements) {
+        Map<String, TypeElement> elementsByName = new HashMap<>();
+        for (TypeElement element : includedElements) {
+            elementsByName.put(element.getQualifiedName().toString(), element);
+        }
+
+        List<TypeElement> rootElements = new ArrayList<>();
+        for (String root : roots) {
+            TypeElement element = elementsByName.get(root);
+            if (element == null) {
+                reporter.print(Diagnostic.Kind.WARNING, "Root type isn't in the processed packages: " + root);
+                continue;
+            }
+            rootElements.add(element);
+        }
+
+        Set<TypeElement> result = TypeReachability.findReachable(includedElements, rootElements);
+        System.out.println("Keeping " + result.size() + " of " + includedElements.size() + " elements reachable from "
+                + rootElements.size() + " roots.");
+        return result;
+    }
+
+    public static int getWrittenTypeCount() {
+        return writtenTypeCount.get();
+    }
+
+    public static void resetWrittenTypeCount() {
+        writtenTypeCount.set(0);
+    }
+
+    /**
+     * Writes each type element, one at a time, straight to its output stream.
+     */
+    private void writeSequential(Set<TypeElement> includedElements) {
+        RunStats.INSTANCE.startPhase("write");
+
         // For each type element, write the Haxe code to the output stream (System.out or a FileOutputStream).
         for (TypeElement element : includedElements) {
-            OutputStream out = BaseWriter.buildOutputStream(outputDir, element);
+            if (writeBehind != null) {
+                // Render into memory, and leave the writing to the writer threads.
+                HaxePrinter printer = new HaxePrinter();
+                Exception error = render(printer, element);
+                emit(element, printer.getBytes());
+                if (error != null) {
+                    reportError(element, error);
+                }
+                continue;
+            }
+
+            OutputStream out = openOutputStream(element);
+            try {
+                Exception error = render(new HaxePrinter(out), element);
+                if (error != null) {
+                    reportError(element, error);
+                }
+            } finally {
+                closeOutputStream(out);
+            }
+        }
+    }
+
+    /**
+     * Groups the type elements by the path of the source file they were declared in.
+     * Elements which can't be traced back to a source file are grouped under null.
+     */
+    private static Map<String, List<TypeElement>> groupBySource(DocTrees docTrees,
+            Set<TypeElement> includedElements) {
+        Map<String, List<TypeElement>> result = new LinkedHashMap<>();
+        for (TypeElement element : includedElements) {
+            result.computeIfAbsent(getSourcePath(docTrees, element), k -> new ArrayList<>()).add(element);
+        }
+        return result;
+    }
+
+    /**
+     * @return The path of the source file the element was declared in, or null if it wasn't read from one.
+     */
+    private static String getSourcePath(DocTrees docTrees, Element element) {
+        TreePath path = docTrees.getPath(element);
+        if (path == null) return null;
+
+        JavaFileObject sourceFile = path.getCompilationUnit().getSourceFile();
+        if (!sourceFile.toUri().getScheme().equals("file")) return null;
+        return Path.of(sourceFile.toUri()).toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Finds the other source files the Haxe files of the given elements depend on: those declaring their
+     * supertypes, and the supertypes of their nested types.
+     *
+     * @param sourceHashes The hash of each source file, which is added to.
+     * @return The hash of each source depended on, by path.
+     */
+    private static Map<String, String> findDependencies(DocTrees docTrees, String source, List<TypeElement> elements,
+            Map<String, String> sourceHashes) throws IOException {
+        Set<TypeElement> supertypes = new LinkedHashSet<>();
+        Deque<TypeElement> pending = new ArrayDeque<>(elements);
+        while (!pending.isEmpty()) {
+            TypeElement element = pending.poll();
+            supertypes.addAll(TypeHierarchy.INSTANCE.getAllSupertypes(element));
+            for (Element innerElement : element.getEnclosedElements()) {
+                if (innerElement instanceof TypeElement) pending.add((TypeElement) innerElement);
+            }
+        }
+
+        Map<String, String> result = new TreeMap<>();
+        for (TypeElement supertype : supertypes) {
+            String dependency = getSourcePath(docTrees, supertype);
+            if (dependency == null || dependency.equals(source) || result.containsKey(dependency)) continue;
+
+            String hash = sourceHashes.get(dependency);
+            if (hash == null) {
+                hash = IncrementalManifest.hashFile(Path.of(dependency));
+                sourceHashes.put(dependency, hash);
+            }
+            result.put(dependency, hash);
+        }
+        return result;
+    }
+
+    /**
+     * Hashes each source file and drops the elements of any source the manifest says is unchanged.
+     *
+     * @param sourceHashes Filled with the hash of each source file.
+     * @return The elements which still need writing.
+     */
+    private Set<TypeElement> skipUnchanged(IncrementalManifest manifest,
+            Map<String, List<TypeElement>> elementsBySource, Map<String, String> sourceHashes) throws IOException {
+        Set<TypeElement> result = new LinkedHashSet<>();
+        for (Map.Entry<String, List<TypeElement>> entry : elementsBySource.entrySet()) {
+            String source = entry.getKey();
+            if (source == null) {
+                result.addAll(entry.getValue());
+                continue;
+            }
+
+            String hash = IncrementalManifest.hashFile(Path.of(source));
+            sourceHashes.put(source, hash);
+
+            if (!manifest.isUnchanged(source, hash, getOutputs(manifest, entry.getValue()))) {
+                result.addAll(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records every source whose elements were all written (or skipped) successfully, and saves the manifest.
+     */
+    private void saveManifest(DocTrees docTrees, IncrementalManifest manifest,
+            Map<String, List<TypeElement>> elementsBySource, Map<String, String> sourceHashes) {
+        try {
+            for (Map.Entry<String, List<TypeElement>> entry : elementsBySource.entrySet()) {
+                if (entry.getKey() == null) continue;
+                if (entry.getValue().stream().anyMatch(failedElements::contains)) continue;
+
+                manifest.record(entry.getKey(), sourceHashes.get(entry.getKey()), getOutputs(manifest, entry.getValue()),
+                        findDependencies(docTrees, entry.getKey(), entry.getValue(), sourceHashes));
+            }
+
+            int deleted = manifest.save();
+            if (deleted > 0) {
+                System.out.println("Deleted " + deleted + " outputs whose sources were removed.");
+            }
+        } catch (IOException e) {
+            reporter.print(Diagnostic.Kind.WARNING, "Could not write incremental manifest: " + e);
+        }
+    }
+
+    private Set<String> getOutputs(IncrementalManifest manifest, List<TypeElement> elements) {
+        Set<String> result = new TreeSet<>();
+        for (TypeElement element : elements) {
+            File output = BaseWriter.getHaxeFile(outputDir, element);
+            result.add(manifest.relativize(output));
+        }
+        return result;
+    }
+
+    /**
+     * Renders each type element into memory on a pool of worker threads.
+     * The results are written out in the same order as a single-threaded run,
+     * so the output is identical.
+     */
+    private void writeParallel(DocTrees docTrees, Set<TypeElement> includedElements) {
+        System.out.println("Rendering with " + threads + " threads.");
+
+        // javac fills in symbols and doc comments lazily, and is not thread-safe while doing so.
+        // Resolve everything the writers will touch before handing the elements to the workers.
+        RunStats.INSTANCE.startPhase("prefetch");
+        for (TypeElement element : includedElements) {
+            prefetch(docTrees, element);
+        }
+        RunStats.INSTANCE.startPhase("write");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<TypeElement> elements = new ArrayList<>(includedElements);
+            // Types are written in order, so only a window of them is rendered ahead of the one being written.
+            int window = threads * RENDER_AHEAD_PER_THREAD;
+            Deque<Future<RenderedType>> results = new ArrayDeque<>();
+            int submitted = 0;
+
+            for (int i = 0; i < elements.size(); i++) {
+                for (; submitted < elements.size() && submitted < i + window; submitted++) {
+                    TypeElement next = elements.get(submitted);
+                    results.add(executor.submit(() -> {
+                        long allocatedBytes = RunStats.INSTANCE.getThreadAllocatedBytes();
+                        RenderedType rendered = new RenderedType();
+                        rendered.error = render(rendered.printer, next);
+                        RunStats.INSTANCE.addWorkerAllocatedBytes(allocatedBytes);
+                        return rendered;
+                    }));
+                }
+
+                TypeElement element = elements.get(i);
+                RenderedType rendered;
+                try {
+                    rendered = results.poll().get();
+                } catch (Exception e) {
+                    reportError(element, e);
+                    continue;
+                }
+
+                emit(element, rendered.printer.getBytes());
+
+                if (rendered.error != null) {
+                    reportError(element, rendered.error);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Sorts the elements by the path they are written to, so archives are always laid out the same way.
+     * Only the first of several elements written to the same path is kept, since a zip can't hold the
+     * same path twice.
+     */
+    private Set<TypeElement> orderForArchive(Set<TypeElement> elements) {
+        TreeMap<String, TypeElement> byPath = new TreeMap<>();
+        List<TypeElement> sorted = new ArrayList<>(elements);
+        sorted.sort(Comparator.comparing(e -> e.getQualifiedName().toString()));
+        for (TypeElement element : sorted) {
+            TypeElement previous = byPath.putIfAbsent(BaseWriter.getHaxePath(element), element);
+            if (previous != null) {
+                reporter.print(Diagnostic.Kind.WARNING, element,
+                        "Skipping " + element + ", which would overwrite " + previous + " in the archive");
+            }
+        }
+        return new LinkedHashSet<>(byPath.values());
+    }
+
+    /**
+     * Writes a type rendered into memory, either now or through the write-behind queue.
+     */
+    private void emit(TypeElement element, ByteSink bytes) {
+        try {
+            if (writeBehind != null) {
+                writeBehind.submit(element, bytes);
+            } else {
+                writeOut(element, bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reportError(element, e);
+        } catch (Exception e) {
+            reportError(element, e);
+        }
+    }
+
+    /**
+     * Writes a type rendered into memory to its output, timing it as file I/O.
+     */
+    private void writeOut(TypeElement element, ByteSink bytes) throws IOException {
+        RunStats.Frame frame = RunStats.INSTANCE.enter();
+        try {
+            OutputStream out = buildOutputStream(element);
             try {
-                BaseWriter.write(out, element);
-            } catch (Exception e) {
-                reporter.print(Diagnostic.Kind.ERROR, element, "Error writing element: " + element.toString());
-                System.out.println(e);
+                bytes.writeTo(out);
             } finally {
                 BaseWriter.cleanupOutputStream(out);
             }
+        } finally {
+            RunStats.INSTANCE.exit(FILE_IO, frame);
         }
+    }
 
-        return true;
+    /**
+     * Opens the output stream for an element, timing it as file I/O.
+     */
+    private OutputStream openOutputStream(TypeElement element) {
+        RunStats.Frame frame = RunStats.INSTANCE.enter();
+        try {
+            return buildOutputStream(element);
+        } finally {
+            RunStats.INSTANCE.exit(FILE_IO, frame);
+        }
+    }
+
+    private OutputStream buildOutputStream(TypeElement element) {
+        try {
+            if (archive != null) {
+                return archive.openEntry(BaseWriter.getHaxePath(element));
+            }
+            return BaseWriter.buildOutputStream(outputDir, element, writeIfChanged);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes and closes an output stream, timing it as file I/O.
+     */
+    private static void closeOutputStream(OutputStream out) {
+        RunStats.Frame frame = RunStats.INSTANCE.enter();
+        try {
+            BaseWriter.cleanupOutputStream(out);
+        } finally {
+            RunStats.INSTANCE.exit(FILE_IO, frame);
+        }
+    }
+
+    /**
+     * The in-memory result of rendering one type element on a worker thread.
+     */
+    private static class RenderedType {
+        final HaxePrinter printer = new HaxePrinter();
+        Exception error = null;
+    }
+
+    /**
+     * Writes a type element as Haxe to the given printer, and flushes it.
+     * 
+     * @return The exception that stopped the element from being written, or null if it was written.
+     */
+    private static Exception render(HaxePrinter printer, TypeElement element) {
+        long start = System.nanoTime();
+        Exception error = null;
+        try {
+            BaseWriter.write(printer, element);
+        } catch (Exception e) {
+            error = e;
+        }
+
+        // Write out whatever was rendered, even if the element failed part way through.
+        try {
+            printer.flushQueue();
+            printer.flush();
+        } catch (Exception e) {
+            if (error == null) error = e;
+        }
+
+        if (RunStats.INSTANCE.isEnabled()) {
+            RunStats.INSTANCE.recordType(element.getQualifiedName().toString(), System.nanoTime() - start);
+        }
+        return error;
+    }
+
+    private void reportError(TypeElement element, Throwable e) {
+        failedElements.add(element);
+        reporter.print(Diagnostic.Kind.ERROR, element, "Error writing element: " + element.toString());
+        System.out.println(e);
+    }
+
+    /**
+     * Resolves the members, annotations, doc comments and types of an element and everything inside it.
+     */
+    private static void prefetch(DocTrees docTrees, Element element) {
+        if (DocumentationBuilder.INSTANCE.getLevel() != DocumentationBuilder.Level.NONE) {
+            docTrees.getDocCommentTree(element);
+        }
+        element.getAnnotationMirrors();
+        prefetch(element.asType());
+
+        if (element instanceof ExecutableElement) {
+            ExecutableElement executable = (ExecutableElement) element;
+            prefetch(executable.getReturnType());
+            for (Element parameter : executable.getParameters()) {
+                parameter.getAnnotationMirrors();
+                prefetch(parameter.asType());
+            }
+        } else if (element instanceof TypeElement) {
+            for (TypeParameterElement typeParam : ((TypeElement) element).getTypeParameters()) {
+                for (TypeMirror bound : typeParam.getBounds()) {
+                    prefetch(bound);
+                }
+            }
+        }
+
+        for (Element innerElement : element.getEnclosedElements()) {
+            prefetch(docTrees, innerElement);
+        }
+    }
+
+    private static void prefetch(TypeMirror type) {
+        if (type == null) return;
+
+        type.getAnnotationMirrors();
+        switch (type.getKind()) {
+            case DECLARED:
+                for (TypeMirror typeArg : ((DeclaredType) type).getTypeArguments()) {
+                    prefetch(typeArg);
+                }
+                break;
+            case ARRAY:
+                prefetch(((ArrayType) type).getComponentType());
+                break;
+            case WILDCARD:
+                prefetch(((WildcardType) type).getExtendsBound());
+                break;
+            default:
+                break;
+        }
     }
 }
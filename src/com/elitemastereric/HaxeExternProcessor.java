@@ -0,0 +1,177 @@
+package com.elitemastereric;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+
+import com.sun.source.util.DocTreePath;
+import com.sun.source.util.DocTrees;
+
+import jdk.javadoc.doclet.Reporter;
+
+/**
+ * Generates Haxe externs while javac compiles the sources, as an annotation processor.
+ *
+ * The compiler has already parsed and attributed the sources, so the writers get the same elements and doc
+ * comments a javadoc run would, without parsing anything again. Only the types compiled in each round are
+ * written, so an incremental build only regenerates the types it recompiled.
+ *
+ * Nothing is generated unless {@code -Ahaxe.output=(output-dir)} is given. Other options:
+ * {@code haxe.packages}, {@code haxe.docs}, {@code haxe.threads}, {@code haxe.ioThreads},
+ * {@code haxe.writeIfChanged}, {@code haxe.nullableAnnotations} and {@code haxe.stats}, which work like the
+ * command line options of the same names.
+ */
+public class HaxeExternProcessor extends AbstractProcessor {
+    private static final String OUTPUT_OPTION = "haxe.output";
+    private static final String PACKAGES_OPTION = "haxe.packages";
+    private static final String STATS_OPTION = "haxe.stats";
+
+    /**
+     * The processor options which are passed on to the doclet, and the doclet option each becomes.
+     */
+    private static final Map<String, String> DOCLET_OPTIONS = new LinkedHashMap<>();
+    static {
+        DOCLET_OPTIONS.put(OUTPUT_OPTION, "-outputdir");
+        DOCLET_OPTIONS.put("haxe.docs", "-docs");
+        DOCLET_OPTIONS.put("haxe.threads", "-threads");
+        DOCLET_OPTIONS.put("haxe.ioThreads", "-io-threads");
+        DOCLET_OPTIONS.put("haxe.writeIfChanged", "-write-if-changed");
+        DOCLET_OPTIONS.put("haxe.nullableAnnotations", "-nullable-annotations");
+    }
+
+    private HaxeDoclet doclet = null;
+    private String packages = null;
+    private String statsFile = null;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+
+        Map<String, String> options = processingEnv.getOptions();
+        if (!options.containsKey(OUTPUT_OPTION)) return;
+
+        packages = options.get(PACKAGES_OPTION);
+
+        doclet = new HaxeDoclet();
+        doclet.init(Locale.getDefault(), new MessagerReporter(processingEnv.getMessager()));
+
+        List<String> docletOptions = new ArrayList<>();
+        for (Map.Entry<String, String> option : DOCLET_OPTIONS.entrySet()) {
+            if (!options.containsKey(option.getKey())) continue;
+            String value = options.get(option.getKey());
+
+            // Flags are given as -Ahaxe.writeIfChanged, or with a value of true or false.
+            if (option.getValue().equals("-write-if-changed")) {
+                if (!"false".equals(value)) docletOptions.add(option.getValue());
+                continue;
+            }
+            docletOptions.add(option.getValue());
+            docletOptions.add(value);
+        }
+        // The doclet would write the statistics after every round, so they are written once processing is over.
+        statsFile = options.get(STATS_OPTION);
+        if (statsFile != null) {
+            RunStats.INSTANCE.setEnabled(true);
+        }
+        ClassFileReader.processOptions(doclet, docletOptions);
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        // Every type being compiled is of interest, annotated or not.
+        return Set.of("*");
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        Set<String> result = new LinkedHashSet<>(DOCLET_OPTIONS.keySet());
+        result.add(PACKAGES_OPTION);
+        result.add(STATS_OPTION);
+        return result;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (doclet == null) return false;
+        if (roundEnv.processingOver()) {
+            writeStats();
+            return false;
+        }
+
+        Set<TypeElement> includedElements = new LinkedHashSet<>();
+        for (Element element : roundEnv.getRootElements()) {
+            if (!(element instanceof TypeElement)) continue;
+
+            TypeElement typeElement = (TypeElement) element;
+            if (!ClassFileReader.isIncludedPackage(typeElement.getQualifiedName().toString(), packages)) continue;
+
+            ClassFileReader.addIncluded(typeElement, includedElements);
+        }
+        if (includedElements.isEmpty()) return false;
+
+        doclet.generate(includedElements, DocTrees.instance(processingEnv), processingEnv.getTypeUtils());
+
+        // The annotations are left for other processors.
+        return false;
+    }
+
+    /**
+     * Writes the statistics of every round to one file.
+     */
+    private void writeStats() {
+        if (statsFile == null) return;
+
+        try {
+            RunStats.INSTANCE.write(new File(statsFile));
+            System.out.println("Wrote statistics to: " + statsFile);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Could not write statistics: " + e);
+        }
+    }
+
+    /**
+     * Reports problems through the compiler, so they show up in the build's output.
+     */
+    private static class MessagerReporter implements Reporter {
+        private final Messager messager;
+
+        MessagerReporter(Messager messager) {
+            this.messager = messager;
+        }
+
+        @Override
+        public void print(Diagnostic.Kind kind, String message) {
+            messager.printMessage(kind, message);
+        }
+
+        @Override
+        public void print(Diagnostic.Kind kind, DocTreePath path, String message) {
+            print(kind, message);
+        }
+
+        @Override
+        public void print(Diagnostic.Kind kind, Element element, String message) {
+            messager.printMessage(kind, message, element);
+        }
+    }
+}
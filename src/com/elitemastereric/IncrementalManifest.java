@@ -0,0 +1,311 @@
+package com.elitemastereric;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Records which Haxe files were generated from which Java source files, so unchanged sources can be
+ * skipped on the next run.
+ *
+ * The manifest is stored in the output directory. Each source file is recorded with a hash of its
+ * contents and the files generated from it. The whole manifest is keyed on the generator version, the
+ * classpath and the options which change the output, so any change to those regenerates everything.
+ *
+ * A type's Haxe file also depends on the sources of its supertypes, for its supertype clauses, overrides
+ * and inherited docs. Those sources are recorded with their hashes too, and a change to any of them
+ * regenerates the source depending on them.
+ */
+public class IncrementalManifest {
+    public static final String FILE_NAME = ".haxe-externs-manifest";
+
+    private static final String HEADER = "# java-haxe-extern-creator incremental manifest";
+
+    /**
+     * Recorded in place of a hash for sources which must be regenerated on their next run.
+     */
+    private static final String STALE_HASH = "-";
+
+    private final File outputDir;
+
+    /**
+     * The key of this run, or null to take the previous run's.
+     */
+    private String key;
+
+    /**
+     * Whether the previous run was made with the same generator version, classpath and options.
+     */
+    private boolean keyMatches = false;
+
+    /**
+     * The sources recorded by the previous run, by path.
+     */
+    private final Map<String, Entry> previous = new HashMap<>();
+
+    /**
+     * The sources recorded by this run, by path.
+     */
+    private final Map<String, Entry> current = new TreeMap<>();
+
+    private static class Entry {
+        final String hash;
+        final Set<String> outputs;
+
+        /**
+         * The hash of each source this source's outputs depend on, by path.
+         */
+        Map<String, String> dependencies = Map.of();
+
+        Entry(String hash, Set<String> outputs) {
+            this.hash = hash;
+            this.outputs = outputs;
+        }
+    }
+
+    /**
+     * The current hash of each dependency checked so far, by path.
+     */
+    private final Map<String, String> dependencyHashes = new HashMap<>();
+
+    private IncrementalManifest(String outputDir, String key) {
+        this.outputDir = new File(outputDir);
+        this.key = key;
+    }
+
+    /**
+     * Reads the manifest left in the output directory by the previous run, if there is one.
+     *
+     * @param classpath     The classpath the sources are compiled against.
+     * @param outputOptions The options which change the output, as from {@link HaxeDoclet#getOutputOptions}.
+     */
+    public static IncrementalManifest load(String outputDir, String classpath, List<String> outputOptions)
+            throws IOException {
+        return load(new IncrementalManifest(outputDir, buildKey(classpath, outputOptions)));
+    }
+
+    /**
+     * Reads the manifest left in the output directory, taking its key as this run's.
+     * For looking after a manifest between runs made with the same options.
+     */
+    public static IncrementalManifest loadExisting(String outputDir) throws IOException {
+        return load(new IncrementalManifest(outputDir, null));
+    }
+
+    private static IncrementalManifest load(IncrementalManifest manifest) throws IOException {
+        File file = manifest.getFile();
+        if (!file.exists()) return manifest;
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts[0].equals("key") && parts.length == 2) {
+                    if (manifest.key == null) manifest.key = parts[1];
+                    manifest.keyMatches = parts[1].equals(manifest.key);
+                } else if (parts[0].equals("source") && parts.length >= 3) {
+                    Set<String> outputs = new TreeSet<>(Arrays.asList(parts).subList(3, parts.length));
+                    manifest.previous.put(parts[1], new Entry(parts[2], outputs));
+                } else if (parts[0].equals("depends") && parts.length % 2 == 0) {
+                    Entry entry = manifest.previous.get(parts[1]);
+                    if (entry == null) continue;
+
+                    Map<String, String> dependencies = new TreeMap<>();
+                    for (int i = 2; i < parts.length; i += 2) {
+                        dependencies.put(parts[i], parts[i + 1]);
+                    }
+                    entry.dependencies = dependencies;
+                }
+            }
+        }
+
+        return manifest;
+    }
+
+    /**
+     * @param source  The path of the source file.
+     * @param hash    The hash of the source file's current contents.
+     * @param outputs The output files the source would generate, relative to the output directory.
+     * @return Whether the previous run generated exactly these outputs from the same contents, and the
+     *         sources they depend on, and they are all still there.
+     */
+    public boolean isUnchanged(String source, String hash, Set<String> outputs) throws IOException {
+        if (!keyMatches) return false;
+
+        Entry entry = previous.get(source);
+        if (entry == null || !entry.hash.equals(hash) || !entry.outputs.equals(outputs)) return false;
+
+        for (Map.Entry<String, String> dependency : entry.dependencies.entrySet()) {
+            if (!dependency.getValue().equals(getDependencyHash(dependency.getKey()))) return false;
+        }
+
+        for (String output : outputs) {
+            if (!new File(outputDir, output).exists()) return false;
+        }
+        return true;
+    }
+
+    private String getDependencyHash(String source) throws IOException {
+        String hash = dependencyHashes.get(source);
+        if (hash == null) {
+            Path path = Path.of(source);
+            hash = Files.isRegularFile(path) ? hashFile(path) : STALE_HASH;
+            dependencyHashes.put(source, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * @return The recorded sources which depend on any of the given sources.
+     */
+    public Set<String> findDependents(Set<String> sources) {
+        Set<String> result = new TreeSet<>();
+        for (Map.Entry<String, Entry> entry : previous.entrySet()) {
+            for (String dependency : entry.getValue().dependencies.keySet()) {
+                if (sources.contains(dependency)) {
+                    result.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records that the given source file generated the given outputs in this run.
+     *
+     * @param dependencies The hash of each other source the outputs depend on, by path.
+     */
+    public void record(String source, String hash, Set<String> outputs, Map<String, String> dependencies) {
+        Entry entry = new Entry(hash, new TreeSet<>(outputs));
+        entry.dependencies = new TreeMap<>(dependencies);
+        current.put(source, entry);
+    }
+
+    /**
+     * Deletes outputs whose source files have disappeared or no longer generate them,
+     * then writes the manifest for the next run.
+     * Sources which still exist but weren't part of this run are kept as they were.
+     *
+     * @return The number of outputs which were deleted.
+     */
+    public int save() throws IOException {
+        List<String> staleOutputs = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : previous.entrySet()) {
+            String source = entry.getKey();
+            Entry currentEntry = current.get(source);
+            if (currentEntry != null) {
+                for (String output : entry.getValue().outputs) {
+                    if (!currentEntry.outputs.contains(output)) {
+                        staleOutputs.add(output);
+                    }
+                }
+            } else if (new File(source).exists()) {
+                // If the key changed, keep tracking the outputs but make sure they get regenerated.
+                current.put(source, keyMatches ? entry.getValue() : new Entry(STALE_HASH, entry.getValue().outputs));
+            } else {
+                staleOutputs.addAll(entry.getValue().outputs);
+            }
+        }
+
+        // Two sources may generate the same file, so only delete files nothing claims anymore.
+        Set<String> claimedOutputs = new HashSet<>();
+        for (Entry entry : current.values()) {
+            claimedOutputs.addAll(entry.outputs);
+        }
+
+        int deleted = 0;
+        for (String output : staleOutputs) {
+            if (claimedOutputs.contains(output)) continue;
+            if (new File(outputDir, output).delete()) {
+                deleted++;
+            }
+        }
+
+        outputDir.mkdirs();
+        Path temp = new File(outputDir, FILE_NAME + ".tmp").toPath();
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write("key\t" + key);
+            writer.newLine();
+            for (Map.Entry<String, Entry> entry : current.entrySet()) {
+                writer.write("source\t" + entry.getKey() + "\t" + entry.getValue().hash);
+                for (String output : entry.getValue().outputs) {
+                    writer.write("\t" + output);
+                }
+                writer.newLine();
+
+                if (entry.getValue().dependencies.isEmpty()) continue;
+                writer.write("depends\t" + entry.getKey());
+                for (Map.Entry<String, String> dependency : entry.getValue().dependencies.entrySet()) {
+                    writer.write("\t" + dependency.getKey() + "\t" + dependency.getValue());
+                }
+                writer.newLine();
+            }
+        }
+        Files.move(temp, getFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        return deleted;
+    }
+
+    /**
+     * @return The given output file as recorded in the manifest, relative to the output directory.
+     */
+    public String relativize(File output) {
+        return outputDir.toPath().relativize(output.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    File getFile() {
+        return new File(outputDir, FILE_NAME);
+    }
+
+    /**
+     * The manifest is only valid for the same generator version, classpath and output options.
+     * Classpath entries are identified by their size and modification time rather than their contents,
+     * so this stays cheap for large jars.
+     */
+    static String buildKey(String classpath, List<String> outputOptions) {
+        StringBuilder key = new StringBuilder("version=" + Main.VERSION + "\n");
+        for (String option : outputOptions) {
+            key.append("option=").append(option).append('\n');
+        }
+        if (classpath != null) {
+            for (String entry : classpath.split(File.pathSeparator)) {
+                File file = new File(entry);
+                key.append(entry).append('\t').append(file.length()).append('\t').append(file.lastModified())
+                        .append('\n');
+            }
+        }
+        return hash(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String hashFile(Path path) throws IOException {
+        return hash(Files.readAllBytes(path));
+    }
+
+    static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+}
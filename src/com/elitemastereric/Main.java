@@ -1,21 +1,53 @@
 package com.elitemastereric;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.tools.DocumentationTool;
 import javax.tools.DocumentationTool.DocumentationTask;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
 
+import com.elitemastereric.writer.NameTable;
+import com.elitemastereric.writer.UnhandledReport;
+
 public class Main {
+	public static final String VERSION = "2.0";
+
 	public static void main(String[] args) {
-		System.out.println("Java->Haxe Converter v2.0");
+		System.out.println("Java->Haxe Converter v" + VERSION);
 
 		String source = null;
 		String packages = null;
 		String output = null;
 		String classpath = null;
+		String classFiles = null;
+		String outputArchive = null;
+		String haxelibName = null;
+		boolean writeIfChanged = false;
+		String statsFile = null;
+		Shard shard = null;
+		int shardCount = 0;
+		int packageGroupSize = 0;
+		int parseThreads = 1;
+		String mergeDirs = null;
+		boolean watch = false;
+		boolean incremental = false;
+		String classpathCache = null;
+		String unhandledReport = null;
+		int maxUnhandled = -1;
+		String cacheDir = null;
+		boolean roots = false;
+		ArrayList<String> docletOptions = new ArrayList<>();
 		for (int i = 0; i < args.length; i++) {
 			if (args[i].equals("-source")) {
 				if (i > args.length - 2) {
@@ -37,48 +69,572 @@ public class Main {
 					throw new IllegalArgumentException("-classpath requires a classpath directory to be specified");
 				}
 				classpath = args[++i];
+			} else if (args[i].equals("-classfiles")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-classfiles requires a list of jars or class directories to be specified");
+				}
+				classFiles = args[++i];
+			} else if (args[i].equals("-cache")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-cache requires a cache directory to be specified");
+				}
+				cacheDir = args[++i];
+			} else if (args[i].equals("-classpath-cache")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-classpath-cache requires a cache directory to be specified");
+				}
+				classpathCache = args[++i];
+			} else if (args[i].equals("-threads")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-threads requires a number of threads to be specified");
+				}
+				docletOptions.add("-threads");
+				docletOptions.add(args[++i]);
+			} else if (args[i].equals("-io-threads")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-io-threads requires a number of threads to be specified");
+				}
+				docletOptions.add("-io-threads");
+				docletOptions.add(args[++i]);
+			} else if (args[i].equals("-docs")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-docs requires a documentation level (none, summary or full)");
+				}
+				docletOptions.add("-docs");
+				docletOptions.add(args[++i]);
+			} else if (args[i].equals("-nullable-annotations")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-nullable-annotations requires a list of annotations, seperated by colons");
+				}
+				docletOptions.add("-nullable-annotations");
+				docletOptions.add(args[++i]);
+			} else if (args[i].equals("-roots")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-roots requires a list of types, seperated by colons");
+				}
+				roots = true;
+				docletOptions.add("-roots");
+				docletOptions.add(args[++i]);
+			} else if (args[i].equals("-write-if-changed")) {
+				writeIfChanged = true;
+				docletOptions.add("-write-if-changed");
+			} else if (args[i].equals("-output-archive")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-output-archive requires a zip file to be specified");
+				}
+				outputArchive = args[++i];
+				docletOptions.add("-output-archive");
+				docletOptions.add(outputArchive);
+			} else if (args[i].equals("-haxelib")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-haxelib requires a library name to be specified");
+				}
+				haxelibName = args[++i];
+				docletOptions.add("-haxelib");
+				docletOptions.add(haxelibName);
+			} else if (args[i].equals("-stats")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-stats requires a file to write statistics to");
+				}
+				statsFile = args[++i];
+				// Enabled and written here rather than by the doclet, so the javadoc pass is measured too, and
+				// the report is written once after every package group.
+				RunStats.INSTANCE.setEnabled(true);
+			} else if (args[i].equals("-unhandled-report")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-unhandled-report requires a file to write the report to");
+				}
+				unhandledReport = args[++i];
+			} else if (args[i].equals("-max-unhandled")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-max-unhandled requires a number of constructs to be specified");
+				}
+				maxUnhandled = Integer.parseInt(args[++i]);
+				if (maxUnhandled < 0) {
+					throw new IllegalArgumentException("-max-unhandled can't be negative");
+				}
+			} else if (args[i].equals("-shard")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-shard requires a shard to be specified, like 0/4");
+				}
+				shard = Shard.parse(args[++i]);
+			} else if (args[i].equals("-shards")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-shards requires a number of shards to be specified");
+				}
+				shardCount = Integer.parseInt(args[++i]);
+				if (shardCount < 1) {
+					throw new IllegalArgumentException("-shards requires at least one shard");
+				}
+			} else if (args[i].equals("-package-group-size")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-package-group-size requires a number of packages to be specified");
+				}
+				packageGroupSize = Integer.parseInt(args[++i]);
+				if (packageGroupSize < 1) {
+					throw new IllegalArgumentException("-package-group-size requires at least one package per group");
+				}
+			} else if (args[i].equals("-parse-threads")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-parse-threads requires a number of threads to be specified");
+				}
+				parseThreads = Integer.parseInt(args[++i]);
+				if (parseThreads < 1) {
+					throw new IllegalArgumentException("-parse-threads requires at least one thread");
+				}
+			} else if (args[i].equals("-merge")) {
+				if (i > args.length - 2) {
+					throw new IllegalArgumentException("-merge requires a list of shard output directories");
+				}
+				mergeDirs = args[++i];
+			} else if (args[i].equals("-watch")) {
+				watch = true;
+			} else if (args[i].equals("-incremental")) {
+				incremental = true;
+			}
+		}
+		if (mergeDirs != null) {
+			if (output == null) {
+				throw new IllegalArgumentException("Usage: -merge (shard-dir-list) -output (output-dir)");
+			}
+			List<File> shardDirs = new ArrayList<>();
+			for (String dir : mergeDirs.split(File.pathSeparator)) {
+				shardDirs.add(new File(dir));
+			}
+			ShardCoordinator.merge(shardDirs, new File(output), writeIfChanged);
+			return;
+		}
+		if (outputArchive != null) {
+			if (incremental || writeIfChanged) {
+				throw new IllegalArgumentException(
+						"-output-archive can't be combined with -incremental or -write-if-changed");
 			}
+		} else if (haxelibName != null) {
+			throw new IllegalArgumentException("-haxelib requires -output-archive");
 		}
-		if (source == null || packages == null || output == null || classpath == null) {
+		if (roots && (shard != null || shardCount > 0 || packageGroupSize > 0 || parseThreads > 1 || watch)) {
+			// Which types are needed can only be worked out with every type at hand.
+			throw new IllegalArgumentException(
+					"-roots can't be combined with sharding, -package-group-size, -parse-threads or -watch");
+		}
+		if (cacheDir != null) {
+			if (classFiles != null || incremental || watch || outputArchive != null) {
+				throw new IllegalArgumentException(
+						"-cache can't be combined with -classfiles, -incremental, -watch or -output-archive");
+			}
+		}
+		ClasspathIndex index = classpathCache != null ? new ClasspathIndex(new File(classpathCache)) : null;
+		if (classFiles != null) {
+			if (output == null && outputArchive == null) {
+				throw new IllegalArgumentException(
+						"Usage: -classfiles (jar-list) -output (output-dir) [-packages (package-list)] [-classpath (classpath-dir)]");
+			}
+			boolean succeeded = ClassFileReader.run(classFiles, output, packages, classpath, index, docletOptions);
+			writeStats(statsFile);
+			finishUnhandledReport(unhandledReport, maxUnhandled);
+			if (!succeeded) {
+				throw new IllegalStateException("Could not generate externs for every class in " + classFiles);
+			}
+			return;
+		}
+		if (source == null || packages == null || (output == null && outputArchive == null) || classpath == null) {
 			throw new IllegalArgumentException(
 					"Usage: -source (source-dir) -output (output-dir) -packages (package-list) -classpath (classpath-dir)");
 		}
+		if (shard != null || shardCount > 0) {
+			if (shard != null && shardCount > 0) {
+				throw new IllegalArgumentException("-shard and -shards can't be combined");
+			}
+			if (incremental || outputArchive != null) {
+				throw new IllegalArgumentException("Sharding can't be combined with -incremental or -output-archive");
+			}
+			if (output == null) {
+				throw new IllegalArgumentException("Sharding requires -output");
+			}
+		}
+		if ((packageGroupSize > 0 || parseThreads > 1) && outputArchive != null) {
+			throw new IllegalArgumentException(
+					"-package-group-size and -parse-threads can't be combined with -output-archive");
+		}
+		if (watch) {
+			if (shard != null || shardCount > 0 || packageGroupSize > 0 || parseThreads > 1 || outputArchive != null) {
+				throw new IllegalArgumentException(
+						"-watch can't be combined with sharding, -package-group-size, -parse-threads or -output-archive");
+			}
+			if (output == null) {
+				throw new IllegalArgumentException("-watch requires -output");
+			}
+			if (maxUnhandled >= 0) {
+				throw new IllegalArgumentException("-max-unhandled can't be combined with -watch");
+			}
+			// Watching only regenerates what changed, which is what the incremental manifest tracks.
+			incremental = true;
+		}
+
+		GenerationCache cache = null;
+		String cacheOutput = output;
+		if (cacheDir != null) {
+			try {
+				cache = new GenerationCache(new File(cacheDir), GenerationCache.buildKey(args, source, classpath));
+				if (cache.isCached()) {
+					restoreFromCache(cache, output, writeIfChanged, unhandledReport, maxUnhandled);
+					return;
+				}
+				// Write the run to the cache, and copy it to the output from there.
+				output = cache.createStagingDir().getPath();
+			} catch (IOException e) {
+				throw new RuntimeException("Could not use cache " + cacheDir + ": " + e.getMessage());
+			}
+			System.out.println("Cache miss for " + cache.getKey().substring(0, 12) + ", generating.");
+		}
+
+		if (shardCount > 0) {
+			// With a cache, the combined report is kept with the cached files.
+			String shardReport = cache != null ? cache.getStagingReport().getPath() : unhandledReport;
+			long unhandled;
+			boolean succeeded = false;
+			try {
+				unhandled = ShardCoordinator.run(args, shardCount, output, statsFile, writeIfChanged, shardReport,
+						maxUnhandled >= 0);
+				succeeded = true;
+			} finally {
+				// Failed shards aren't merged, so there is nothing to copy, and the staged run is thrown away.
+				if (cache != null && succeeded) {
+					publishToCache(cache, cacheOutput, writeIfChanged, succeeded);
+					copyReport(cache, unhandledReport);
+				}
+			}
+			checkUnhandled(unhandled, maxUnhandled);
+			return;
+		}
+		if (incremental) {
+			// The manifest is invalidated whenever the classpath changes.
+			docletOptions.add("-incremental");
+			docletOptions.add(classpath);
+		}
+
+		if (watch) {
+			watch(source, output, packages, classpath, docletOptions, unhandledReport, statsFile, index);
+			return;
+		}
+		if (shard == null && packageGroupSize == 0 && parseThreads == 1) {
+			boolean succeeded = runDoclet(source, output, packages, classpath, docletOptions, null, index);
+			printIndexStats(index);
+			writeStats(statsFile);
+			if (cache != null) {
+				publishToCache(cache, cacheOutput, writeIfChanged, succeeded);
+			}
+			finishUnhandledReport(unhandledReport, maxUnhandled);
+			checkSucceeded(succeeded);
+			return;
+		}
 
-		runDoclet(source, output, packages, classpath);
+		// Pass javadoc the source files of the packages to process, rather than every package.
+		Set<String> packageNames = SourcePackages.findPackages(source, packages);
+		// Types in packages processed by other shards or groups still get their Haxe names.
+		NameTable.INSTANCE.setWrittenPackages(packageNames);
+
+		List<String> selectedPackages = new ArrayList<>(packageNames);
+		if (shard != null) {
+			selectedPackages = shard.select(packageNames);
+			System.out.println("Shard " + shard + " has " + selectedPackages.size() + " packages.");
+		}
+
+		int groupSize = packageGroupSize;
+		if (groupSize == 0) {
+			// One group per thread.
+			groupSize = Math.max((selectedPackages.size() + parseThreads - 1) / parseThreads, 1);
+		}
+		int groupCount = (selectedPackages.size() + groupSize - 1) / groupSize;
+		List<List<File>> groups = new ArrayList<>();
+		for (int group = 0; group < groupCount; group++) {
+			List<String> groupPackages = selectedPackages.subList(group * groupSize,
+					Math.min((group + 1) * groupSize, selectedPackages.size()));
+			if (groupCount > 1) {
+				System.out.println("Package group " + (group + 1) + "/" + groupCount + ": " + groupPackages.size()
+						+ " packages.");
+			}
+
+			List<File> sourceFiles = SourcePackages.findSourceFiles(source, groupPackages);
+			if (sourceFiles.isEmpty()) continue;
+
+			groups.add(sourceFiles);
+		}
+
+		boolean succeeded = true;
+		if (parseThreads > 1) {
+			succeeded = runDocletsInParallel(source, output, packages, classpath, docletOptions, groups, parseThreads,
+					index);
+		} else {
+			for (List<File> sourceFiles : groups) {
+				succeeded &= runDoclet(source, output, packages, classpath, docletOptions, sourceFiles, index);
+			}
+		}
+		printIndexStats(index);
+		writeStats(statsFile);
+		if (cache != null) {
+			publishToCache(cache, cacheOutput, writeIfChanged, succeeded);
+		}
+		finishUnhandledReport(unhandledReport, maxUnhandled);
+		checkSucceeded(succeeded);
+	}
+
+	/**
+	 * Copies a cached run to the output directory, instead of running javadoc.
+	 */
+	private static void restoreFromCache(GenerationCache cache, String output, boolean writeIfChanged,
+			String unhandledReport, int maxUnhandled) {
+		try {
+			int copied = cache.restore(new File(output), writeIfChanged, false);
+			System.out.println("Cache hit for " + cache.getKey().substring(0, 12) + ", copied " + copied + " files.");
+
+			copyReport(cache, unhandledReport);
+			checkUnhandled(UnhandledReport.readTotal(cache.getReport()), maxUnhandled);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not restore from cache: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Publishes a successful run to the cache, then copies it to the output directory.
+	 * Failed runs are copied to the output directory but not cached.
+	 */
+	private static void publishToCache(GenerationCache cache, String output, boolean writeIfChanged,
+			boolean succeeded) {
+		try {
+			if (succeeded) {
+				File report = cache.getStagingReport();
+				if (!report.exists()) {
+					UnhandledReport.INSTANCE.write(report);
+				}
+				cache.publish();
+			}
+			int copied = cache.restore(new File(output), writeIfChanged, !succeeded);
+			System.out.println((succeeded ? "Cached the run," : "Did not cache the failed run,") + " copied " + copied
+					+ " files to: " + output);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write to cache: " + e.getMessage());
+		}
+	}
+
+	private static void copyReport(GenerationCache cache, String unhandledReport) {
+		if (unhandledReport == null) return;
+		try {
+			File target = new File(unhandledReport).getAbsoluteFile();
+			target.getParentFile().mkdirs();
+			Files.copy(cache.getReport().toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			System.out.println("Wrote unhandled construct report to: " + unhandledReport);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write " + unhandledReport + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reports the constructs which couldn't be converted, and fails if there were too many.
+	 *
+	 * @param reportFile   If not null, the file to write the full report to.
+	 * @param maxUnhandled The most constructs to allow, or -1 to allow any number.
+	 */
+	private static void finishUnhandledReport(String reportFile, int maxUnhandled) {
+		long total = UnhandledReport.INSTANCE.getTotal();
+		if (total > 0) {
+			System.out.println("Found " + total + " unhandled constructs, marked with ~~~ in the output.");
+		}
+		if (reportFile != null) {
+			try {
+				UnhandledReport.INSTANCE.write(new File(reportFile));
+				System.out.println("Wrote unhandled construct report to: " + reportFile);
+			} catch (IOException e) {
+				throw new RuntimeException("Could not write " + reportFile + ": " + e.getMessage());
+			}
+		}
+		checkUnhandled(total, maxUnhandled);
+	}
+
+	private static void printIndexStats(ClasspathIndex index) {
+		if (index == null) return;
+		System.out.println("Classpath index: " + index.getHits() + " jars cached, " + index.getMisses() + " indexed.");
+	}
+
+	/**
+	 * Writes the statistics of the run, if asked for. Called on the main thread once every doclet has finished.
+	 */
+	private static void writeStats(String statsFile) {
+		if (statsFile == null) return;
+		try {
+			RunStats.INSTANCE.write(new File(statsFile));
+			System.out.println("Wrote statistics to: " + statsFile);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write " + statsFile + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Fails the run if javadoc did, so shard workers exit non-zero and their coordinator notices.
+	 */
+	private static void checkSucceeded(boolean succeeded) {
+		if (!succeeded) {
+			throw new IllegalStateException("javadoc failed, see the errors above");
+		}
+	}
+
+	private static void checkUnhandled(long total, int maxUnhandled) {
+		if (maxUnhandled >= 0 && total > maxUnhandled) {
+			throw new IllegalStateException(
+					"Found " + total + " unhandled constructs, more than -max-unhandled " + maxUnhandled);
+		}
+	}
+
+	/**
+	 * Runs once over every package, then keeps running over the sources which change.
+	 */
+	private static void watch(String source, String output, String packages, String classpath,
+			ArrayList<String> docletOptions, String unhandledReport, String statsFile, ClasspathIndex index) {
+		// Runs only include the changed sources, but the rest are still written.
+		NameTable.INSTANCE.setWrittenPackages(SourcePackages.findPackages(source, packages));
+
+		// Reused across runs, so the classpath jars stay open and indexed.
+		StandardJavaFileManager fileManager = getFileManager(source, classpath, index);
+
+		try {
+			// The report covers the latest run.
+			SourceWatcher watcher = new SourceWatcher(source, packages, output, sourceFiles -> {
+				UnhandledReport.INSTANCE.reset();
+				runDoclet(source, output, packages, classpath, docletOptions, sourceFiles, fileManager);
+				writeStats(statsFile);
+				finishUnhandledReport(unhandledReport, -1);
+			});
+
+			long start = System.nanoTime();
+			HaxeDoclet.resetWrittenTypeCount();
+			runDoclet(source, output, packages, classpath, docletOptions, null, fileManager);
+			writeStats(statsFile);
+			finishUnhandledReport(unhandledReport, -1);
+			watcher.recordInitialRun(System.nanoTime() - start);
+
+			watcher.watch();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not watch " + source + ": " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs a javadoc task for each group of source files at the same time, each on its own thread.
+	 * Parsing and analysing the sources happen in parallel, but the doclet only writes one group at a time.
+	 *
+	 * @return Whether every task succeeded.
+	 */
+	private static boolean runDocletsInParallel(String source, String output, String packages, String classpath,
+			ArrayList<String> docletOptions, List<List<File>> groups, int threads, ClasspathIndex index) {
+		System.out.println("Running " + groups.size() + " javadoc tasks on " + threads + " threads.");
+		RunStats.INSTANCE.startPhase("javadoc");
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (List<File> sourceFiles : groups) {
+				results.add(executor.submit(() -> {
+					long allocatedBytes = RunStats.INSTANCE.getThreadAllocatedBytes();
+					try {
+						return runDoclet(source, output, packages, classpath, docletOptions, sourceFiles, index);
+					} finally {
+						RunStats.INSTANCE.addWorkerAllocatedBytes(allocatedBytes);
+					}
+				}));
+			}
+
+			boolean succeeded = true;
+			for (Future<Boolean> result : results) {
+				succeeded &= result.get();
+			}
+			return succeeded;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while running javadoc");
+		} catch (ExecutionException e) {
+			throw new RuntimeException("A javadoc task failed: " + e.getCause(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
 	}
 
 	/**
 	 * Computes the final arguments for the DocumentationTool and runs it.
+	 * 
+	 * @param docletOptions Additional options which are passed through to the HaxeDoclet.
+	 * @param sourceFiles The source files to process, or null to process every package in packages.
+	 * @param index If not null, the classpath is listed from its cache instead of opening every jar.
+	 * @return Whether javadoc succeeded.
+	 */
+	private static boolean runDoclet(String source, String output, String packages, String classpath,
+			ArrayList<String> docletOptions, List<File> sourceFiles, ClasspathIndex index) {
+		StandardJavaFileManager fileManager = getFileManager(source, classpath, index);
+
+		boolean succeeded = runDoclet(source, output, packages, classpath, docletOptions, sourceFiles, fileManager);
+
+		// Let go of any open jars, so nothing from this run outlives it.
+		try {
+			fileManager.close();
+		} catch (IOException e) {
+			System.out.println("Could not close file manager: " + e);
+		}
+		return succeeded;
+	}
+
+	/**
+	 * @param index If not null, the classpath is listed from its cache instead of opening every jar.
+	 */
+	private static StandardJavaFileManager getFileManager(String source, String classpath, ClasspathIndex index) {
+		DocumentationTool tool = javax.tools.ToolProvider.getSystemDocumentationTool();
+		StandardJavaFileManager fileManager = tool.getStandardFileManager(null, null, null);
+		if (index == null) return fileManager;
+
+		// javadoc only passes -sourcepath and -classpath on to its own file managers.
+		fileManager.handleOption("-sourcepath", List.of(source).iterator());
+		fileManager.handleOption("-classpath", List.of(classpath).iterator());
+		return index.wrap(fileManager);
+	}
+
+
+	/**
+	 * @param fileManager The file manager to read sources and the classpath through.
 	 */
-	private static void runDoclet(String source, String output, String packages, String classpath) {
+	private static boolean runDoclet(String source, String output, String packages, String classpath,
+			ArrayList<String> docletOptions, List<File> sourceFiles, StandardJavaFileManager fileManager) {
 		ArrayList<String> options = new ArrayList<>();
-		// List<File> sourceFiles = findSourceFiles(packages, source);
-		ArrayList<File> sourceFiles = new ArrayList<>();
 
 		options.add("-sourcepath");
 		options.add(source);
-		options.add("-subpackages");
-		options.add(packages);
+		if (sourceFiles == null) {
+			sourceFiles = new ArrayList<>();
+			options.add("-subpackages");
+			options.add(packages);
+		}
 		options.add("-classpath");
 		options.add(classpath);
 		options.add("-Xmaxerrs");
 		options.add("100000");
-		options.add("-outputdir");
-		options.add(output);
+		if (output != null) {
+			options.add("-outputdir");
+			options.add(output);
+		}
+		options.addAll(docletOptions);
 
 		DocumentationTool tool = javax.tools.ToolProvider.getSystemDocumentationTool();
-		StandardJavaFileManager fileManager = tool.getStandardFileManager(null, null, null);
 		Iterable<? extends JavaFileObject> fileObjects = fileManager
 				.getJavaFileObjects(sourceFiles.toArray(new File[0]));
 
+		RunStats.INSTANCE.startPhase("javadoc");
 		DocumentationTask task = tool.getTask(
 				null, // default writer (System.err)
-				null, // default file manager
+				fileManager,
 				null, // default diagnostic listener
 				HaxeDoclet.class, // default doclet class
 				options,
 				fileObjects);
 
-		task.call();
+		return task.call();
 	}
 }
@@ -0,0 +1,90 @@
+package com.elitemastereric;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.lang.model.AnnotatedConstruct;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Decides whether elements and types are annotated as nullable.
+ *
+ * Annotations are matched by the qualified name of their annotation mirrors, so the annotation classes
+ * don't need to be loaded, and no annotation proxies are created. The results for elements are cached,
+ * since the same element is checked by several writers.
+ */
+public class NullabilityResolver {
+
+    /**
+     * The nullable annotations recognized unless others are configured.
+     */
+    public static final Set<String> DEFAULT_ANNOTATIONS = Set.of(
+            // JetBrains
+            "org.jetbrains.annotations.Nullable",
+            // JSR 305
+            "javax.annotation.Nullable",
+            "javax.annotation.CheckForNull",
+            // JSpecify
+            "org.jspecify.annotations.Nullable",
+            // Checker Framework
+            "org.checkerframework.checker.nullness.qual.Nullable",
+            // Android
+            "androidx.annotation.Nullable",
+            "android.support.annotation.Nullable",
+            "android.annotation.Nullable");
+
+    public static final NullabilityResolver INSTANCE = new NullabilityResolver();
+
+    private Set<String> annotations = DEFAULT_ANNOTATIONS;
+
+    private final Map<Element, Boolean> elementCache = new ConcurrentHashMap<>();
+
+    public Set<String> getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * @param annotations The qualified names of the annotations which mark something as nullable.
+     */
+    public void setAnnotations(Set<String> annotations) {
+        this.annotations = Set.copyOf(annotations);
+        elementCache.clear();
+    }
+
+    /**
+     * Forgets the cached elements. Called at the start of each run, since elements belong to one compiler.
+     */
+    public void resetCache() {
+        elementCache.clear();
+    }
+
+    public boolean isNullable(Element element) {
+        if (element == null) return false;
+        return elementCache.computeIfAbsent(element, this::hasNullableAnnotation);
+    }
+
+    /**
+     * Type mirrors aren't cached: the same type can be annotated differently where it is used.
+     */
+    public boolean isNullable(TypeMirror type) {
+        if (type == null) return false;
+        return hasNullableAnnotation(type);
+    }
+
+    private boolean hasNullableAnnotation(AnnotatedConstruct construct) {
+        List<? extends AnnotationMirror> mirrors = construct.getAnnotationMirrors();
+        for (AnnotationMirror mirror : mirrors) {
+            Element annotationElement = mirror.getAnnotationType().asElement();
+            if (annotationElement instanceof TypeElement
+                    && annotations.contains(((TypeElement) annotationElement).getQualifiedName().toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,292 @@
+package com.elitemastereric;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects timing and memory statistics for a run, and writes them as a JSON report.
+ *
+ * A run is split into phases, which follow each other on the main thread. Within the phases, time spent in
+ * each writer is recorded separately. Writers call each other, so each one is credited with its own
+ * time, not counting the writers it called. Nothing is recorded unless statistics are enabled.
+ */
+public class RunStats {
+    public static final RunStats INSTANCE = new RunStats();
+
+    /**
+     * How many of the slowest types to list in the report.
+     */
+    private static final int SLOWEST_TYPES = 20;
+
+    private static final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private volatile boolean enabled = false;
+
+    /**
+     * The thread which enabled statistics. Only it moves from phase to phase.
+     */
+    private volatile Thread phaseThread = null;
+
+    private final long startNanos = System.nanoTime();
+
+    private final List<Phase> phases = new ArrayList<>();
+    private Phase currentPhase = null;
+
+    /**
+     * Bytes allocated by worker threads, which the main thread can't see. Added to the current phase.
+     */
+    private final LongAdder workerAllocatedBytes = new LongAdder();
+
+    private final Map<String, WriterTotal> writers = new ConcurrentHashMap<>();
+    private final ThreadLocal<Frame> currentFrame = new ThreadLocal<>();
+
+    private final List<TypeTime> typeTimes = new ArrayList<>();
+
+    private static class Phase {
+        final String name;
+        final long startNanos;
+        final long startAllocatedBytes;
+        final long startWorkerAllocatedBytes;
+        long nanos;
+        long allocatedBytes;
+        MemoryUsage heap;
+
+        Phase(String name, long startNanos, long startAllocatedBytes, long startWorkerAllocatedBytes) {
+            this.name = name;
+            this.startNanos = startNanos;
+            this.startAllocatedBytes = startAllocatedBytes;
+            this.startWorkerAllocatedBytes = startWorkerAllocatedBytes;
+        }
+    }
+
+    private static class WriterTotal {
+        final LongAdder calls = new LongAdder();
+        final LongAdder selfNanos = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+    }
+
+    /**
+     * A writer call in progress. Collects the time spent in the writers it calls.
+     */
+    public static class Frame {
+        final Frame parent;
+        final long startNanos;
+        long childNanos = 0;
+
+        Frame(Frame parent, long startNanos) {
+            this.parent = parent;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private static class TypeTime {
+        final String name;
+        final long nanos;
+
+        TypeTime(String name, long nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled && phaseThread == null) {
+            phaseThread = Thread.currentThread();
+        }
+    }
+
+    /**
+     * Ends the current phase, if any, and starts the named one.
+     * Ignored on other threads than the one which enabled statistics, so work running in parallel is counted
+     * in the phase which started it.
+     */
+    public synchronized void startPhase(String name) {
+        if (!enabled || Thread.currentThread() != phaseThread) return;
+
+        long now = System.nanoTime();
+        endPhase(now);
+        currentPhase = new Phase(name, now, threadBean.getCurrentThreadAllocatedBytes(),
+                workerAllocatedBytes.sum());
+        phases.add(currentPhase);
+    }
+
+    private void endPhase(long now) {
+        if (currentPhase == null) return;
+
+        currentPhase.nanos = now - currentPhase.startNanos;
+        currentPhase.allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - currentPhase.startAllocatedBytes
+                + workerAllocatedBytes.sum() - currentPhase.startWorkerAllocatedBytes;
+        currentPhase.heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        currentPhase = null;
+    }
+
+    /**
+     * @return The number of bytes the current thread has allocated so far, to pass to
+     *         {@link #addWorkerAllocatedBytes(long)} later. Zero if statistics are disabled.
+     */
+    public long getThreadAllocatedBytes() {
+        if (!enabled) return 0;
+        return threadBean.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Records the bytes a worker thread allocated since the given count from
+     * {@link #getThreadAllocatedBytes()}.
+     */
+    public void addWorkerAllocatedBytes(long startAllocatedBytes) {
+        if (!enabled) return;
+        workerAllocatedBytes.add(threadBean.getCurrentThreadAllocatedBytes() - startAllocatedBytes);
+    }
+
+    /**
+     * Starts timing a writer call.
+     *
+     * @return The frame to pass to {@link #exit(String, Frame)}, or null if statistics are disabled.
+     */
+    public Frame enter() {
+        if (!enabled) return null;
+
+        Frame frame = new Frame(currentFrame.get(), System.nanoTime());
+        currentFrame.set(frame);
+        return frame;
+    }
+
+    /**
+     * Finishes timing a writer call, and credits its time to the named writer.
+     */
+    public void exit(String writer, Frame frame) {
+        if (frame == null) return;
+
+        long elapsed = System.nanoTime() - frame.startNanos;
+        if (frame.parent != null) {
+            frame.parent.childNanos += elapsed;
+        }
+        currentFrame.set(frame.parent);
+
+        WriterTotal total = writers.computeIfAbsent(writer, k -> new WriterTotal());
+        total.calls.increment();
+        total.selfNanos.add(elapsed - frame.childNanos);
+        total.totalNanos.add(elapsed);
+    }
+
+    /**
+     * Records how long a type took to render.
+     */
+    public void recordType(String name, long nanos) {
+        if (!enabled) return;
+
+        synchronized (typeTimes) {
+            typeTimes.add(new TypeTime(name, nanos));
+        }
+    }
+
+    /**
+     * Ends the current phase and writes the report.
+     * Only the thread which enabled statistics ends the phase, as its allocations are the ones counted.
+     */
+    public synchronized void write(File file) throws IOException {
+        long now = System.nanoTime();
+        if (Thread.currentThread() == phaseThread) {
+            endPhase(now);
+        }
+
+        List<TypeTime> slowest;
+        synchronized (typeTimes) {
+            slowest = new ArrayList<>(typeTimes);
+        }
+        int typeCount = slowest.size();
+        slowest.sort(Comparator.comparingLong((TypeTime t) -> t.nanos).reversed());
+        if (slowest.size() > SLOWEST_TYPES) {
+            slowest = slowest.subList(0, SLOWEST_TYPES);
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"version\": " + quote(Main.VERSION) + ",\n");
+            out.write("  \"totalMillis\": " + millis(now - startNanos) + ",\n");
+            out.write("  \"typeCount\": " + typeCount + ",\n");
+
+            out.write("  \"phases\": [");
+            boolean firstPhase = true;
+            for (Phase phase : phases) {
+                // Still running on the thread which started it.
+                if (phase.heap == null) continue;
+
+                out.write(firstPhase ? "\n" : ",\n");
+                firstPhase = false;
+                out.write("    {\"name\": " + quote(phase.name)
+                        + ", \"millis\": " + millis(phase.nanos)
+                        + ", \"allocatedBytes\": " + phase.allocatedBytes
+                        + ", \"heapUsedBytes\": " + phase.heap.getUsed()
+                        + ", \"heapCommittedBytes\": " + phase.heap.getCommitted() + "}");
+            }
+            out.write("\n  ],\n");
+
+            out.write("  \"writers\": [");
+            boolean first = true;
+            for (Map.Entry<String, WriterTotal> entry : new TreeMap<>(writers).entrySet()) {
+                WriterTotal total = entry.getValue();
+                out.write(first ? "\n" : ",\n");
+                first = false;
+                out.write("    {\"name\": " + quote(entry.getKey())
+                        + ", \"calls\": " + total.calls.sum()
+                        + ", \"selfMillis\": " + millis(total.selfNanos.sum())
+                        + ", \"totalMillis\": " + millis(total.totalNanos.sum()) + "}");
+            }
+            out.write("\n  ],\n");
+
+            out.write("  \"slowestTypes\": [");
+            for (int i = 0; i < slowest.size(); i++) {
+                TypeTime type = slowest.get(i);
+                out.write(i == 0 ? "\n" : ",\n");
+                out.write("    {\"name\": " + quote(type.name) + ", \"millis\": " + millis(type.nanos) + "}");
+            }
+            out.write("\n  ]\n");
+            out.write("}\n");
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /**
+     * @return The value as a JSON string.
+     */
+    public static String quote(String value) {
+        StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+}
@@ -0,0 +1,68 @@
+package com.elitemastereric;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * One part of a run split across several processes or machines.
+ *
+ * The packages to process are expanded into every package with sources under them, and each package is
+ * assigned to a shard by a hash of its name. The assignment only depends on the package name and the
+ * number of shards, so every shard agrees on it without talking to the others.
+ */
+public class Shard {
+    final int index;
+    final int count;
+
+    Shard(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Parses a shard given as "index/count", counting from 0.
+     */
+    public static Shard parse(String value) {
+        int slash = value.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("-shard must be given as index/count, like 0/4");
+        }
+        try {
+            return new Shard(Integer.parseInt(value.substring(0, slash)),
+                    Integer.parseInt(value.substring(slash + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("-shard must be given as index/count, like 0/4");
+        }
+    }
+
+    /**
+     * @return Whether the given package belongs to this shard.
+     */
+    public boolean contains(String packageName) {
+        CRC32 crc = new CRC32();
+        crc.update(packageName.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue() % count == index;
+    }
+
+    /**
+     * @return The packages in this shard, out of the given ones.
+     */
+    public List<String> select(Set<String> packageNames) {
+        List<String> result = new ArrayList<>();
+        for (String packageName : packageNames) {
+            if (contains(packageName)) result.add(packageName);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,301 @@
+package com.elitemastereric;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.elitemastereric.writer.UnhandledReport;
+
+/**
+ * Splits a run into shards, runs each one in its own JVM, and merges their outputs.
+ *
+ * Each worker writes to its own directory, so they never touch the same files. The merge then moves
+ * every file into the output directory. Two shards producing the same file with different contents is
+ * a conflict, and fails the run.
+ */
+public class ShardCoordinator {
+    /**
+     * The options which the coordinator handles itself, and the number of arguments each takes.
+     */
+    private static final Map<String, Integer> COORDINATOR_OPTIONS = Map.of(
+            "-shards", 1,
+            "-output", 1,
+            "-stats", 1,
+            "-unhandled-report", 1,
+            "-max-unhandled", 1,
+            "-cache", 1,
+            "-write-if-changed", 0);
+
+    /**
+     * Runs the given arguments as separate shards, and merges the results into the output directory.
+     *
+     * @param args      The arguments Main was started with.
+     * @param statsFile       If not null, the stats of every shard are combined into this file.
+     * @param unhandledReport If not null, the unhandled construct reports of every shard are combined into
+     *                        this file.
+     * @param countUnhandled  Whether to count the unhandled constructs even without a report file.
+     * @return The number of unhandled constructs across every shard, if they were counted.
+     */
+    public static long run(String[] args, int shardCount, String output, String statsFile, boolean writeIfChanged,
+            String unhandledReport, boolean countUnhandled) {
+        boolean collectUnhandled = unhandledReport != null || countUnhandled;
+        long start = System.nanoTime();
+
+        File workDir = new File(output, ".shards");
+        deleteRecursively(workDir);
+        workDir.mkdirs();
+
+        System.out.println("Running " + shardCount + " shards in " + workDir);
+
+        List<Process> processes = new ArrayList<>();
+        List<File> outputDirs = new ArrayList<>();
+        List<File> logFiles = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            File shardOutput = new File(workDir, "shard-" + i);
+            File logFile = new File(workDir, "shard-" + i + ".log");
+            outputDirs.add(shardOutput);
+            logFiles.add(logFile);
+
+            List<String> command = buildWorkerCommand(args, new Shard(i, shardCount), shardOutput,
+                    statsFile != null ? getStatsFile(workDir, i) : null,
+                    collectUnhandled ? getUnhandledFile(workDir, i) : null);
+            try {
+                processes.add(new ProcessBuilder(command).redirectErrorStream(true)
+                        .redirectOutput(logFile).start());
+            } catch (IOException e) {
+                throw new RuntimeException("Could not start shard " + i + ": " + e.getMessage());
+            }
+        }
+
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            int exitCode;
+            try {
+                exitCode = processes.get(i).waitFor();
+            } catch (InterruptedException e) {
+                processes.forEach(Process::destroy);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for shards");
+            }
+
+            if (exitCode == 0) {
+                System.out.println("Shard " + i + "/" + shardCount + " finished.");
+            } else {
+                failed.add("Shard " + i + "/" + shardCount + " failed with exit code " + exitCode + ", see "
+                        + logFiles.get(i));
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new IllegalStateException(String.join("\n", failed));
+        }
+
+        merge(outputDirs, new File(output), writeIfChanged);
+
+        if (statsFile != null) {
+            try {
+                writeStats(workDir, shardCount, new File(statsFile), System.nanoTime() - start);
+                System.out.println("Wrote statistics to: " + statsFile);
+            } catch (IOException e) {
+                System.out.println("Could not write statistics: " + e);
+            }
+        }
+
+        long unhandled = 0;
+        if (collectUnhandled) {
+            try {
+                unhandled = combineUnhandled(workDir, shardCount, unhandledReport);
+                if (unhandledReport != null) {
+                    System.out.println("Wrote unhandled construct report to: " + unhandledReport);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Could not combine unhandled construct reports: " + e.getMessage());
+            }
+        }
+
+        deleteRecursively(workDir);
+        return unhandled;
+    }
+
+    /**
+     * Builds the command to run one shard: the same JVM and arguments, writing to the shard's own directory.
+     */
+    static List<String> buildWorkerCommand(String[] args, Shard shard, File shardOutput, File statsFile,
+            File unhandledFile) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        // Pass on heap sizes and system properties, but not things like debugger agents.
+        for (String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (jvmArg.startsWith("-X") || jvmArg.startsWith("-D")) {
+                command.add(jvmArg);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+
+        for (int i = 0; i < args.length; i++) {
+            Integer argumentCount = COORDINATOR_OPTIONS.get(args[i]);
+            if (argumentCount != null) {
+                i += argumentCount;
+                continue;
+            }
+            command.add(args[i]);
+        }
+
+        command.add("-shard");
+        command.add(shard.toString());
+        command.add("-output");
+        command.add(shardOutput.getPath());
+        if (statsFile != null) {
+            command.add("-stats");
+            command.add(statsFile.getPath());
+        }
+        if (unhandledFile != null) {
+            command.add("-unhandled-report");
+            command.add(unhandledFile.getPath());
+        }
+        return command;
+    }
+
+    /**
+     * Moves the files from each shard's output directory into the output directory.
+     *
+     * @param writeIfChanged If true, files already in the output directory with the same contents are left
+     *                       alone.
+     * @throws IllegalStateException If two shards produced different files at the same path.
+     */
+    public static void merge(List<File> shardDirs, File output, boolean writeIfChanged) {
+        // Where each merged file came from, to check the files other shards produce at the same path.
+        Map<Path, File> mergedFrom = new HashMap<>();
+        List<String> conflicts = new ArrayList<>();
+        int moved = 0;
+        int unchanged = 0;
+
+        for (File shardDir : shardDirs) {
+            for (Path file : listFiles(shardDir.toPath())) {
+                Path relative = shardDir.toPath().relativize(file);
+                Path target = output.toPath().resolve(relative);
+
+                try {
+                    File previous = mergedFrom.get(relative);
+                    if (previous != null) {
+                        if (!sameContents(file, target)) {
+                            conflicts.add(relative + " differs between " + previous + " and " + shardDir);
+                        }
+                        continue;
+                    }
+                    mergedFrom.put(relative, shardDir);
+
+                    if (writeIfChanged && Files.exists(target) && sameContents(file, target)) {
+                        unchanged++;
+                        continue;
+                    }
+
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                    moved++;
+                } catch (IOException e) {
+                    throw new RuntimeException("Could not merge " + file + ": " + e.getMessage());
+                }
+            }
+        }
+
+        System.out.println("Merged " + (moved + unchanged) + " files from " + shardDirs.size() + " shards"
+                + (writeIfChanged ? ", " + unchanged + " unchanged." : "."));
+
+        if (!conflicts.isEmpty()) {
+            throw new IllegalStateException("Shards produced conflicting outputs:\n" + String.join("\n", conflicts));
+        }
+    }
+
+    private static List<Path> listFiles(Path dir) {
+        if (!Files.isDirectory(dir)) return List.of();
+
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean sameContents(Path a, Path b) throws IOException {
+        if (Files.size(a) != Files.size(b)) return false;
+        return Files.mismatch(a, b) == -1;
+    }
+
+    private static File getStatsFile(File workDir, int shard) {
+        return new File(workDir, "shard-" + shard + ".json");
+    }
+
+    private static File getUnhandledFile(File workDir, int shard) {
+        return new File(workDir, "shard-" + shard + ".unhandled.json");
+    }
+
+    /**
+     * Combines the unhandled construct reports written by each shard, as they are, into one report.
+     *
+     * @param reportFile If not null, where to write the combined report.
+     * @return The total number of unhandled constructs.
+     */
+    private static long combineUnhandled(File workDir, int shardCount, String reportFile) throws IOException {
+        long total = 0;
+        StringBuilder shards = new StringBuilder();
+        for (int i = 0; i < shardCount; i++) {
+            File shardReport = getUnhandledFile(workDir, i);
+            String report = Files.readString(shardReport.toPath(), StandardCharsets.UTF_8).strip();
+            total += UnhandledReport.readTotal(shardReport);
+            shards.append(i == 0 ? "\n    " : ",\n    ").append(report.replace("\n", "\n    "));
+        }
+
+        if (reportFile != null) {
+            String json = "{\n  \"total\": " + total + ",\n  \"shards\": [" + shards + "\n  ]\n}\n";
+            File parent = new File(reportFile).getAbsoluteFile().getParentFile();
+            if (parent != null) parent.mkdirs();
+            Files.writeString(Path.of(reportFile), json, StandardCharsets.UTF_8);
+        }
+        return total;
+    }
+
+    /**
+     * Combines the reports written by each shard, as they are, into one report.
+     */
+    private static void writeStats(File workDir, int shardCount, File statsFile, long nanos) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"version\": \"").append(Main.VERSION).append("\",\n");
+        json.append("  \"totalMillis\": ").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6))
+                .append(",\n");
+        json.append("  \"shards\": [");
+        for (int i = 0; i < shardCount; i++) {
+            File shardStats = getStatsFile(workDir, i);
+            String report = shardStats.exists()
+                    ? Files.readString(shardStats.toPath(), StandardCharsets.UTF_8).strip()
+                    : "null";
+            json.append(i == 0 ? "\n    " : ",\n    ").append(report.replace("\n", "\n    "));
+        }
+        json.append("\n  ]\n}\n");
+
+        File parent = statsFile.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        Files.writeString(statsFile.toPath(), json, StandardCharsets.UTF_8);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            Arrays.stream(children).forEach(ShardCoordinator::deleteRecursively);
+        }
+        file.delete();
+    }
+}
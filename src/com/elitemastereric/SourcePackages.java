@@ -0,0 +1,66 @@
+package com.elitemastereric;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Finds the packages and source files in a source path, for runs which pass javadoc a subset of them.
+ */
+public class SourcePackages {
+    /**
+     * Expands the given packages, seperated by colons, into every package with sources in or under them,
+     * like javadoc's -subpackages.
+     *
+     * @param sourcePath The source directories, seperated by the path separator.
+     */
+    public static Set<String> findPackages(String sourcePath, String packages) {
+        Set<String> result = new TreeSet<>();
+        for (String root : sourcePath.split(File.pathSeparator)) {
+            for (String packageName : packages.split(":")) {
+                File directory = new File(root, packageName.replace('.', File.separatorChar));
+                addPackages(directory, packageName, result);
+            }
+        }
+        return result;
+    }
+
+    private static void addPackages(File directory, String packageName, Set<String> result) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addPackages(file, packageName + "." + file.getName(), result);
+            } else if (isSourceFile(file)) {
+                result.add(packageName);
+            }
+        }
+    }
+
+    /**
+     * @return The source files directly in the given packages, in a stable order.
+     */
+    public static List<File> findSourceFiles(String sourcePath, Collection<String> packageNames) {
+        List<File> result = new ArrayList<>();
+        for (String root : sourcePath.split(File.pathSeparator)) {
+            for (String packageName : packageNames) {
+                File[] files = new File(root, packageName.replace('.', File.separatorChar)).listFiles();
+                if (files == null) continue;
+
+                for (File file : files) {
+                    if (isSourceFile(file)) result.add(file);
+                }
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    private static boolean isSourceFile(File file) {
+        return file.isFile() && file.getName().endsWith(".java") && !file.getName().equals("module-info.java");
+    }
+}
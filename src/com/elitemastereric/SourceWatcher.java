@@ -0,0 +1,247 @@
+package com.elitemastereric;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.elitemastereric.writer.NameTable;
+
+/**
+ * Watches the source directories, and regenerates the Haxe files of sources as they change.
+ *
+ * Runs stay in the same JVM, so javac and the writers are already loaded and compiled by the JIT after the
+ * first run. Only the changed source files, and those declaring their subtypes, are passed to javadoc, and
+ * the incremental manifest takes care of deleted sources. After each run, counters are written to a status file in the output directory.
+ */
+public class SourceWatcher {
+    public static final String STATUS_FILE_NAME = ".haxe-externs-status.json";
+
+    /**
+     * How long to wait for more changes after one arrives, so a save touching several files is one run.
+     */
+    private static final long QUIET_MILLIS = 50;
+
+    /**
+     * The longest to keep collecting changes before running anyway.
+     */
+    private static final long MAX_DELAY_MILLIS = 500;
+
+    /**
+     * Runs javadoc over the given source files.
+     */
+    interface Runner {
+        void run(List<File> sourceFiles);
+    }
+
+    private final List<Path> roots = new ArrayList<>();
+    private final String packages;
+    private final File outputDir;
+    private final Runner runner;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+
+    /**
+     * Set when a directory is created, since it may be a new package.
+     */
+    private boolean packagesChanged = false;
+
+    private int runCount = 0;
+    private long typesRegenerated = 0;
+    private int lastTypesRegenerated = 0;
+    private long lastLatencyMillis = 0;
+
+    public SourceWatcher(String sourcePath, String packages, String outputDir, Runner runner) throws IOException {
+        for (String root : sourcePath.split(File.pathSeparator)) {
+            roots.add(Path.of(root).toAbsolutePath().normalize());
+        }
+        this.packages = packages;
+        this.outputDir = new File(outputDir);
+        this.runner = runner;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Watches for changes until the process is stopped.
+     */
+    public void watch() throws IOException, InterruptedException {
+        for (Path root : roots) {
+            for (String packageName : packages.split(":")) {
+                Path packageDir = root.resolve(packageName.replace('.', File.separatorChar));
+                if (Files.isDirectory(packageDir)) registerAll(packageDir);
+            }
+        }
+        System.out.println("Watching " + watchedDirs.size() + " directories for changes.");
+
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                long start = System.nanoTime();
+
+                Set<Path> changed = new TreeSet<>();
+                collectChanges(key, changed);
+
+                // Gather the rest of the changes made at the same time.
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MILLIS);
+                while (System.nanoTime() < deadline) {
+                    key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                    if (key == null) break;
+                    collectChanges(key, changed);
+                }
+
+                if (changed.isEmpty()) continue;
+                regenerate(changed, start);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Stopped.
+        }
+    }
+
+    private void registerAll(Path dir) throws IOException {
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            for (Path subdir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                WatchKey key = subdir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirs.put(key, subdir);
+            }
+        }
+    }
+
+    /**
+     * Adds the source files a watch key saw change, and starts watching any new directories.
+     */
+    private void collectChanges(WatchKey key, Set<Path> changed) throws IOException {
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                // Too many changes to track one by one, so let the manifest work out what changed.
+                changed.add(roots.get(0));
+                continue;
+            }
+
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                registerAll(path);
+                packagesChanged = true;
+                // Files may have been added before the directory was watched.
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter(this::isSourceFile).forEach(changed::add);
+                }
+            } else if (isSourceFile(path)
+                    || (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && watchedDirs.containsValue(path))) {
+                changed.add(path);
+            }
+        }
+
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+    }
+
+    private boolean isSourceFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".java") && !name.equals("module-info.java");
+    }
+
+    /**
+     * Runs javadoc over the changed sources which still exist, then prunes the outputs of deleted ones.
+     */
+    private void regenerate(Set<Path> changed, long start) throws IOException {
+        String sourcePath = String.join(File.pathSeparator, roots.stream().map(Path::toString).toList());
+        if (packagesChanged) {
+            NameTable.INSTANCE.setWrittenPackages(SourcePackages.findPackages(sourcePath, packages));
+            packagesChanged = false;
+        }
+
+        List<File> sourceFiles = new ArrayList<>();
+        boolean rescan = false;
+        for (Path path : changed) {
+            if (roots.contains(path)) {
+                rescan = true;
+            } else if (Files.isRegularFile(path) && isSourceFile(path)) {
+                sourceFiles.add(path.toFile());
+            }
+        }
+        if (rescan) {
+            // Events were lost, so every source is handed to the manifest to check.
+            sourceFiles = SourcePackages.findSourceFiles(sourcePath, SourcePackages.findPackages(sourcePath, packages));
+        } else {
+            // Subtypes take their supertype clauses, overrides and inherited docs from the changed sources.
+            Set<String> changedSources = new TreeSet<>();
+            for (Path path : changed) {
+                changedSources.add(path.toString());
+            }
+            IncrementalManifest previous = IncrementalManifest.loadExisting(outputDir.getPath());
+            for (String dependent : previous.findDependents(changedSources)) {
+                Path path = Path.of(dependent);
+                if (!changed.contains(path) && Files.isRegularFile(path)) {
+                    sourceFiles.add(path.toFile());
+                }
+            }
+        }
+
+        HaxeDoclet.resetWrittenTypeCount();
+        if (!sourceFiles.isEmpty()) {
+            runner.run(sourceFiles);
+        }
+
+        // Runs only record the sources they were given, so deleted sources have to be cleaned up here.
+        // Every run uses the same options, so the manifest's key is still right.
+        IncrementalManifest manifest = IncrementalManifest.loadExisting(outputDir.getPath());
+        int deleted = manifest.save();
+
+        runCount++;
+        lastTypesRegenerated = HaxeDoclet.getWrittenTypeCount();
+        typesRegenerated += lastTypesRegenerated;
+        lastLatencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.println("[watch] Run " + runCount + ": " + changed.size() + " changed, " + lastTypesRegenerated
+                + " types regenerated, " + deleted + " outputs deleted in " + lastLatencyMillis + " ms.");
+        writeStatus();
+    }
+
+    /**
+     * Called after the first, full run.
+     */
+    public void recordInitialRun(long nanos) throws IOException {
+        runCount++;
+        lastTypesRegenerated = HaxeDoclet.getWrittenTypeCount();
+        typesRegenerated += lastTypesRegenerated;
+        lastLatencyMillis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        writeStatus();
+    }
+
+    /**
+     * Writes the counters for editors to read. The file is replaced in one step, so it is never half written.
+     */
+    private void writeStatus() throws IOException {
+        String json = String.format(Locale.ROOT,
+                "{\"runs\": %d, \"typesRegenerated\": %d, \"lastTypesRegenerated\": %d, "
+                        + "\"lastLatencyMillis\": %d, \"lastRunAt\": \"%s\"}%n",
+                runCount, typesRegenerated, lastTypesRegenerated, lastLatencyMillis, Instant.now());
+
+        outputDir.mkdirs();
+        Path temp = new File(outputDir, STATUS_FILE_NAME + ".tmp").toPath();
+        Files.writeString(temp, json, StandardCharsets.UTF_8);
+        Files.move(temp, new File(outputDir, STATUS_FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
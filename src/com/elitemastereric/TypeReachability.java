@@ -0,0 +1,156 @@
+package com.elitemastereric;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.IntersectionType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.UnionType;
+import javax.lang.model.type.WildcardType;
+
+/**
+ * Finds the types which some root types need, so only those have to be written.
+ *
+ * A type needs the types in the signatures of its non-private members, its supertypes and type
+ * parameters, including type arguments and bounds. A nested type also needs the type it is written
+ * inside, and a type needs its member types, since they are written into the same module.
+ * Only the types being processed are followed; types from the classpath are left out.
+ */
+class TypeReachability {
+    private final Set<TypeElement> includedElements;
+
+    private final Set<TypeElement> reached = new HashSet<>();
+    private final Deque<TypeElement> pending = new ArrayDeque<>();
+
+    /**
+     * Type variables already followed, since their bounds can refer to themselves.
+     */
+    private final Set<Element> visitedTypeVariables = new HashSet<>();
+
+    private TypeReachability(Set<TypeElement> includedElements) {
+        this.includedElements = includedElements;
+    }
+
+    /**
+     * @return The included elements reachable from the roots, in their original order.
+     */
+    static Set<TypeElement> findReachable(Set<TypeElement> includedElements, Collection<TypeElement> roots) {
+        TypeReachability reachability = new TypeReachability(includedElements);
+        for (TypeElement root : roots) {
+            reachability.reach(root);
+        }
+        reachability.run();
+
+        Set<TypeElement> result = new LinkedHashSet<>();
+        for (TypeElement element : includedElements) {
+            if (reachability.reached.contains(element)) result.add(element);
+        }
+        return result;
+    }
+
+    private void reach(TypeElement element) {
+        if (includedElements.contains(element) && reached.add(element)) {
+            pending.add(element);
+        }
+    }
+
+    private void run() {
+        while (!pending.isEmpty()) {
+            TypeElement element = pending.poll();
+
+            if (element.getEnclosingElement() instanceof TypeElement) {
+                reach((TypeElement) element.getEnclosingElement());
+            }
+
+            visit(element.getSuperclass());
+            for (TypeMirror type : element.getInterfaces()) {
+                visit(type);
+            }
+            visitTypeParameters(element.getTypeParameters());
+
+            for (Element member : element.getEnclosedElements()) {
+                if (member.getModifiers().contains(Modifier.PRIVATE)) continue;
+
+                if (member instanceof TypeElement) {
+                    reach((TypeElement) member);
+                } else if (member instanceof ExecutableElement) {
+                    ExecutableElement executable = (ExecutableElement) member;
+                    visit(executable.getReturnType());
+                    for (VariableElement parameter : executable.getParameters()) {
+                        visit(parameter.asType());
+                    }
+                    for (TypeMirror thrown : executable.getThrownTypes()) {
+                        visit(thrown);
+                    }
+                    visitTypeParameters(executable.getTypeParameters());
+                } else {
+                    // Fields, enum constants and record components.
+                    visit(member.asType());
+                }
+            }
+        }
+    }
+
+    private void visitTypeParameters(Collection<? extends TypeParameterElement> typeParameters) {
+        for (TypeParameterElement typeParameter : typeParameters) {
+            for (TypeMirror bound : typeParameter.getBounds()) {
+                visit(bound);
+            }
+        }
+    }
+
+    private void visit(TypeMirror type) {
+        if (type == null) return;
+
+        switch (type.getKind()) {
+            case DECLARED:
+                DeclaredType declared = (DeclaredType) type;
+                reach((TypeElement) declared.asElement());
+                for (TypeMirror argument : declared.getTypeArguments()) {
+                    visit(argument);
+                }
+                visit(declared.getEnclosingType());
+                break;
+            case ARRAY:
+                visit(((ArrayType) type).getComponentType());
+                break;
+            case TYPEVAR:
+                TypeVariable variable = (TypeVariable) type;
+                if (visitedTypeVariables.add(variable.asElement())) {
+                    visit(variable.getUpperBound());
+                    visit(variable.getLowerBound());
+                }
+                break;
+            case WILDCARD:
+                visit(((WildcardType) type).getExtendsBound());
+                visit(((WildcardType) type).getSuperBound());
+                break;
+            case INTERSECTION:
+                for (TypeMirror bound : ((IntersectionType) type).getBounds()) {
+                    visit(bound);
+                }
+                break;
+            case UNION:
+                for (TypeMirror alternative : ((UnionType) type).getAlternatives()) {
+                    visit(alternative);
+                }
+                break;
+            default:
+                // Primitives, void and errors don't refer to any types.
+                break;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.elitemastereric;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.lang.model.element.TypeElement;
+
+import com.elitemastereric.writer.ByteSink;
+
+/**
+ * Hands rendered types to dedicated threads which write them out, so rendering never waits on the disk.
+ *
+ * The queue is bounded: once it is full, {@link #submit} blocks until a writer thread catches up, which
+ * keeps the number of rendered files held in memory bounded. Files are taken off the queue in the order
+ * they were submitted. If every writer thread has stopped, submitting fails instead of waiting forever.
+ */
+class WriteBehindQueue {
+    /**
+     * Writes one rendered type to wherever it belongs.
+     */
+    interface Output {
+        void write(TypeElement element, ByteSink bytes) throws Exception;
+    }
+
+    /**
+     * An element that failed to write, and why.
+     */
+    static class Failure {
+        final TypeElement element;
+        final Throwable error;
+
+        Failure(TypeElement element, Throwable error) {
+            this.element = element;
+            this.error = error;
+        }
+    }
+
+    private static class Job {
+        final TypeElement element;
+        final ByteSink bytes;
+
+        Job(TypeElement element, ByteSink bytes) {
+            this.element = element;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Tells a writer thread to stop.
+     */
+    private static final Job END = new Job(null, null);
+
+    /**
+     * How long to wait for room in the queue before checking the writer threads are still running.
+     */
+    private static final long LIVENESS_CHECK_MILLIS = 100;
+
+    private final BlockingQueue<Job> queue;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicInteger liveThreads = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<>();
+    private final Output output;
+
+    /**
+     * @param threadCount The number of writer threads.
+     * @param capacity    The number of rendered types which can wait to be written before submitting blocks.
+     */
+    WriteBehindQueue(int threadCount, int capacity, Output output) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.output = output;
+
+        liveThreads.set(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(this::drain, "haxe-writer-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    private void drain() {
+        long allocatedBytes = RunStats.INSTANCE.getThreadAllocatedBytes();
+        try {
+            while (true) {
+                Job job = queue.take();
+                if (job == END) break;
+
+                try {
+                    output.write(job.element, job.bytes);
+                } catch (Throwable e) {
+                    failures.add(new Failure(job.element, e));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            liveThreads.decrementAndGet();
+            RunStats.INSTANCE.addWorkerAllocatedBytes(allocatedBytes);
+        }
+    }
+
+    /**
+     * Queues a rendered type to be written. Blocks while the queue is full.
+     * The bytes mustn't be changed afterwards.
+     *
+     * @throws IOException If every writer thread has stopped, so the type would never be written.
+     */
+    void submit(TypeElement element, ByteSink bytes) throws InterruptedException, IOException {
+        if (!put(new Job(element, bytes))) {
+            throw new IOException("The writer threads have stopped");
+        }
+    }
+
+    /**
+     * Waits for room in the queue, as long as a writer thread is left to make some.
+     *
+     * @return Whether the job was queued.
+     */
+    private boolean put(Job job) throws InterruptedException {
+        while (!queue.offer(job, LIVENESS_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (liveThreads.get() == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Waits for everything queued to be written, and stops the writer threads.
+     *
+     * @return The elements which failed to write.
+     */
+    List<Failure> close() throws InterruptedException {
+        for (int i = 0; i < threads.size(); i++) {
+            if (!put(END)) break;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Whatever the stopped writer threads left behind was never written.
+        List<Failure> result = new ArrayList<>(failures);
+        for (Job job : queue) {
+            if (job != END) {
+                result.add(new Failure(job.element, new IOException("The writer threads stopped before writing it")));
+            }
+        }
+        queue.clear();
+        return result;
+    }
+}
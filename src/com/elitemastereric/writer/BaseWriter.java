@@ -5,17 +5,20 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.lang.reflect.RecordComponent;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.RecordComponentElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 
 import com.elitemastereric.ElementUtils;
+import com.elitemastereric.RunStats;
 
 public class BaseWriter {
     public static final String[] ELEMENT_NAMES = new String[] { "A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M", "N", "O", "P", "Q", "R", "S", "T", "U", "V", "W", "X", "Y", "Z" };
@@ -23,7 +26,24 @@ public class BaseWriter {
      * Some variables were given names in Java that are reserved in Haxe.
      */
     public static final List<String> RESERVED_NAMES = List.of("cast");
-    static final String INDENT = "  ";
+
+    /**
+     * The output directories known to exist in this run.
+     */
+    private static final Set<File> createdDirectories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether the writers write an extern for the given type, when its package is written. Top level types
+     * have to be public. Nested types are written unless they are private or protected, which Haxe has no
+     * equivalent of.
+     */
+    public static boolean hasExtern(TypeElement element) {
+        Set<Modifier> modifiers = element.getModifiers();
+        if (!(element.getEnclosingElement() instanceof TypeElement)) {
+            return modifiers.contains(Modifier.PUBLIC);
+        }
+        return !modifiers.contains(Modifier.PRIVATE) && !modifiers.contains(Modifier.PROTECTED);
+    }
 
     /**
      * If an output directory is specified, this will be the output stream to write
@@ -31,10 +51,21 @@ public class BaseWriter {
      * print to System.out.
      */
     public static OutputStream buildOutputStream(String outputDir, TypeElement element) {
+        return buildOutputStream(outputDir, element, false);
+    }
+
+    /**
+     * @param writeIfChanged If true, the file is collected in memory and only written when closed,
+     *                       if its contents differ from the file already there.
+     */
+    public static OutputStream buildOutputStream(String outputDir, TypeElement element, boolean writeIfChanged) {
         if (outputDir == null) {
             return System.out;
         } else {
             File output = createHaxeFile(outputDir, element);
+            if (writeIfChanged) {
+                return new ChangedFileOutputStream(output);
+            }
             try {
                 return new BufferedOutputStream(new FileOutputStream(output));
             } catch (Exception e) {
@@ -56,17 +87,28 @@ public class BaseWriter {
     }
 
     /**
-     * Writes an Element to the output stream based on its type.
-     * @param out The output stream to write to.
+     * Writes an Element to the printer based on its type.
+     * @param out The printer to write to.
      * @param element The element to write.
      * @param docTrees The documentation trees.
      * 
      * @throws IOException If an error occurs while writing to the output stream.
      * @boolean True if the element was written, false otherwise.
      */
-    public static void write(OutputStream out, Element element, int indent) throws IOException {
+    public static void write(HaxePrinter out, Element element, int indent) throws IOException {
         if (element == null) return;
 
+        RunStats.Frame frame = RunStats.INSTANCE.enter();
+        Element previousElement = UnhandledReport.INSTANCE.enter(element);
+        try {
+            writeElement(out, element, indent);
+        } finally {
+            UnhandledReport.INSTANCE.exit(previousElement);
+            RunStats.INSTANCE.exit(getWriterName(element.getKind()), frame);
+        }
+    }
+
+    private static void writeElement(HaxePrinter out, Element element, int indent) throws IOException {
         // The VISITOR design pattern is really dumb just use a switch statement
         switch (element.getKind()) {
             case CLASS:
@@ -95,97 +137,104 @@ public class BaseWriter {
             case RECORD_COMPONENT:
                 RecordComponentWriter.writeRecordComponent(out, (RecordComponentElement) element, indent + 1);
                 break;
+            case STATIC_INIT:
+            case INSTANCE_INIT:
+                // Initializers only show up in class files, and aren't part of the API.
+                break;
             default:
                 // Write an easily searchable string to the output stream.
-                write(out, "~~~ELEMENT: %s%n", element.getKind());
+                UnhandledReport.INSTANCE.record("ELEMENT");
+                out.print("~~~ELEMENT: ").print(element.getKind()).newline();
                 break;
         }
     }
 
-    public static void write(OutputStream out, Element element) throws IOException {
-        // Class is at 0 indent so root element is at -1 indent
-        write(out, element, -1);
+    /**
+     * @return The name of the writer which writes elements of the given kind, for statistics.
+     */
+    static String getWriterName(ElementKind kind) {
+        switch (kind) {
+            case CLASS:
+            case RECORD:
+                return "ClassWriter";
+            case FIELD:
+                return "FieldWriter";
+            case CONSTRUCTOR:
+            case METHOD:
+                return "ExecutableWriter";
+            case INTERFACE:
+                return "InterfaceWriter";
+            case ENUM:
+            case ENUM_CONSTANT:
+                return "EnumWriter";
+            case RECORD_COMPONENT:
+                return "RecordComponentWriter";
+            default:
+                return "BaseWriter";
+        }
     }
 
-    public static void writeIndent(OutputStream out, int indent) throws IOException {
-        if (indent <= 0) return;
-
-        for (int i = 0; i < indent; i++) {
-            write(out, INDENT);
-        }
+    public static void write(HaxePrinter out, Element element) throws IOException {
+        // Class is at 0 indent so root element is at -1 indent
+        write(out, element, -1);
     }
 
     static File createHaxeFile(String outputDir, TypeElement element) {
-        String elementPackage = ElementUtils.getPackageName(element);
+        File output = getHaxeFile(outputDir, element);
 
-        String packagePath = elementPackage.replace('.', File.separatorChar);
+        // Every type in a package shares a directory, so only the first one needs to check for it.
+        File directory = output.getParentFile();
+        if (createdDirectories.contains(directory)) return output;
 
-        File output = new File(outputDir, packagePath);
-        output.mkdirs();
-        if (!output.exists()) {
+        directory.mkdirs();
+        if (!directory.exists()) {
             throw new RuntimeException("Could not create required directory in output directory");
         }
-        output = new File(output, element.getSimpleName().toString() + ".hx");
+        createdDirectories.add(directory);
 
         return output;
     }
 
-    static void write(OutputStream out, String format, Object... args) throws IOException {
-        if (format == null || format.isEmpty()) return;
-
-        if (format == "%n" && isLastWriteQueueNewLine()) return;
-
-        flushQueue(out);
-
-        out.write(String.format(format, args).toString().getBytes());
-    }
-
     /**
-     * A set 
+     * Forgets which directories were created, in case they were deleted since. Called before each run.
      */
-    private static ArrayList<String> writeQueue = new ArrayList<String>();
-
-    public static void queueWrite(OutputStream out, String format, Object... args) throws IOException {
-        if (format == null) return;
-
-        if (format == "%n" && isLastWriteQueueNewLine()) return;
-
-        writeQueue.add(String.format(format, args));
+    public static void resetDirectoryCache() {
+        createdDirectories.clear();
     }
 
-    public static void queueWrite(OutputStream out, Element element, int indent) throws IOException {
-        if (element == null) return;
-
-        StringOutputStream sos = new StringOutputStream();
-        write(sos, element, indent);
+    /**
+     * @return The file in the output directory the given element is written to. Doesn't create anything.
+     */
+    public static File getHaxeFile(String outputDir, TypeElement element) {
+        String elementPackage = ElementUtils.getPackageName(element);
 
-        writeQueue.add(sos.toString());
-    }
+        String packagePath = elementPackage.replace('.', File.separatorChar);
 
-    public static void replaceQueue(String find, String replace) {
-        for (int i = 0; i < writeQueue.size(); i++) {
-            String s = writeQueue.get(i);
-            writeQueue.set(i, s.replace(find, replace));
-        }
+        return new File(new File(outputDir, packagePath), element.getSimpleName().toString() + ".hx");
     }
 
-    static boolean isLastWriteQueueNewLine() {
-        if (writeQueue.isEmpty()) return false;
+    /**
+     * @return The path of the file the given element is written to, relative to the output directory,
+     *         with forward slashes.
+     */
+    public static String getHaxePath(TypeElement element) {
+        String elementPackage = ElementUtils.getPackageName(element);
+        String fileName = element.getSimpleName().toString() + ".hx";
 
-        String s = writeQueue.get(writeQueue.size() - 1);
-        return s.endsWith(String.format("%n"));
+        if (elementPackage.isEmpty()) return fileName;
+        return elementPackage.replace('.', '/') + "/" + fileName;
     }
 
-    public static void flushQueue(OutputStream out) throws IOException {
-        if (writeQueue.isEmpty()) return;
+    /**
+     * Renders an element on its own, and queues it to be written to the printer before the next direct write.
+     */
+    public static void queueWrite(HaxePrinter out, Element element, int indent) throws IOException {
+        if (element == null) return;
 
-        for (String s : writeQueue) {
-            out.write(s.getBytes());
-        }
-        writeQueue.clear();
-    }
+        HaxePrinter elementOut = new HaxePrinter();
+        write(elementOut, element, indent);
+        elementOut.flushQueue();
 
-    public static void cancelQueue() {
-        writeQueue.clear();
+        out.queue(elementOut.getBytes());
     }
 }
@@ -0,0 +1,76 @@
+package com.elitemastereric.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable in-memory buffer of bytes.
+ *
+ * Unlike ByteArrayOutputStream it isn't synchronized, and its contents can be handed to another stream
+ * without being copied out first.
+ */
+public class ByteSink extends OutputStream {
+    byte[] buf;
+    int count = 0;
+
+    public ByteSink() {
+        this(256);
+    }
+
+    public ByteSink(int initialCapacity) {
+        buf = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    /**
+     * Makes sure at least the given number of bytes can be added without growing the buffer again.
+     */
+    void ensureCapacity(int extra) {
+        int required = count + extra;
+        if (required > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(required, buf.length * 2));
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    /**
+     * Writes the contents of this sink to the given stream in one call.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    public boolean endsWith(byte[] suffix) {
+        if (suffix.length > count) return false;
+        return Arrays.equals(buf, count - suffix.length, count, suffix, 0, suffix.length);
+    }
+
+    /**
+     * Decodes the contents as UTF-8.
+     */
+    @Override
+    public String toString() {
+        return new String(buf, 0, count, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package com.elitemastereric.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects a Haxe file in memory, and when closed only writes it to disk if it differs from the file
+ * already there. Unchanged files keep their modification time, so build caches don't treat them as dirty.
+ */
+public class ChangedFileOutputStream extends ByteArrayOutputStream {
+    private static final AtomicInteger writtenCount = new AtomicInteger();
+    private static final AtomicInteger unchangedCount = new AtomicInteger();
+
+    private final File file;
+    private boolean closed = false;
+
+    public ChangedFileOutputStream(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        if (isUnchanged()) {
+            unchangedCount.incrementAndGet();
+            return;
+        }
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            writeTo(out);
+        }
+        writtenCount.incrementAndGet();
+    }
+
+    /**
+     * Compares the sizes first, then the contents chunk by chunk.
+     */
+    private boolean isUnchanged() throws IOException {
+        if (!file.isFile() || file.length() != count) return false;
+
+        byte[] chunk = new byte[Math.min(count, 64 * 1024)];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < count) {
+                int read = in.readNBytes(chunk, 0, Math.min(chunk.length, count - offset));
+                if (read <= 0) return false;
+                if (!Arrays.equals(chunk, 0, read, buf, offset, offset + read)) return false;
+                offset += read;
+            }
+            return in.read() == -1;
+        }
+    }
+
+    public static int getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public static int getUnchangedCount() {
+        return unchangedCount.get();
+    }
+
+    public static void resetCounts() {
+        writtenCount.set(0);
+        unchangedCount.set(0);
+    }
+}
@@ -1,7 +1,6 @@
 package com.elitemastereric.writer;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.ArrayList;
 
 import javax.lang.model.element.Element;
@@ -9,6 +8,7 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 
@@ -22,19 +22,16 @@ public class ClassWriter extends BaseWriter {
      * @param element The class to write.
      * @throws IOException
      */
-    public static void writeClass(OutputStream out, TypeElement element, int indent) throws IOException {
+    public static void writeClass(HaxePrinter out, TypeElement element, int indent) throws IOException {
         writeInnerClass(out, element, "", indent);
     }
 
-    public static void writeInnerClass(OutputStream out, TypeElement element, String prefix, int indent) throws IOException {
+    public static void writeInnerClass(HaxePrinter out, TypeElement element, String prefix, int indent) throws IOException {
         String className = element.getSimpleName().toString();
         String prefixedClassName = prefix + element.getSimpleName();
 
         String packageName = ElementUtils.getPackageName(element);
 
-        String qualifiedName = element.getQualifiedName().toString();
-        String prefixedQualifiedName = qualifiedName.replace(element.getSimpleName(), prefixedClassName);
-
         boolean isPublic = false;
         boolean isPrivate = false;
         boolean isFinal = false;
@@ -62,15 +59,16 @@ public class ClassWriter extends BaseWriter {
                     isAbstract = true;
                     break;
                 default:
-                    write(out, "~~~CLASSMODIFIER: %s%n", modifier);
+                    UnhandledReport.INSTANCE.record("CLASSMODIFIER");
+                    out.print("~~~CLASSMODIFIER: ").print(modifier).newline();
             }
         }
 
         //
         // DON'T WRITE THE CLASS IF IT'S PRIVATE
         //
-        if (isPrivate) {
-            cancelQueue();
+        if (!hasExtern(element)) {
+            out.cancelQueue();
             return;
         }
 
@@ -102,22 +100,29 @@ public class ClassWriter extends BaseWriter {
         }
 
         if (indent == 0 && prefix == "") {
-            write(out, "package %s;%n%n", packageName);
+            out.print("package ").print(packageName).println(";").newline();
         } else {
-            write(out, "%n");
+            out.newline();
         }
 
         DocumentationBuilder.writeDocs(out, element, indent);
 
-        writeIndent(out, indent);
-        write(out, "@:native('%s')%n", element.getQualifiedName());
+        out.indent(indent).print("@:native('").print(element.getQualifiedName()).println("')");
+
+        StringBuilder supertypes = new StringBuilder();
+        DeclaredType superclass = TypeHierarchy.INSTANCE.getSuperclass(element);
+        if (superclass != null) {
+            supertypes.append(" extends ").append(TypeBuilder.buildType(superclass));
+        }
+        for (DeclaredType superinterface : TypeHierarchy.INSTANCE.getInterfaces(element)) {
+            supertypes.append(" implements ").append(TypeBuilder.buildType(superinterface));
+        }
 
-        writeIndent(out, indent);
-        write(out, "%s%sextern class %s%s%n", isAbstract ? "abstract " : "", isFinal ? "final " : "",
-            prefixedClassName, typeParamList.isEmpty() ? "" : "<" + typeParamList + ">");
+        out.indent(indent).print(isAbstract ? "abstract " : "").print(isFinal ? "final " : "").print("extern class ")
+                .print(prefixedClassName).print(typeParamList.isEmpty() ? "" : "<" + typeParamList + ">")
+                .println(supertypes);
         
-        writeIndent(out, indent);
-        write(out, "{%n");
+        out.indent(indent).println("{");
 
         boolean firstElement = true;
         ArrayList<TypeElement> externClasses = new ArrayList<TypeElement>();
@@ -131,17 +136,14 @@ public class ClassWriter extends BaseWriter {
                 if (firstElement) {
                     firstElement = false;
                 } else {
-                    queueWrite(out, "%n");
+                    out.queueNewline();
                 }    
             }
 
-            // Handle references to the inner type.
-            replaceQueue(qualifiedName, prefixedQualifiedName);
-            flushQueue(out);
+            out.flushQueue();
         }
 
-        writeIndent(out, indent);
-        write(out, "}%n");
+        out.indent(indent).println("}");
 
         for (TypeElement externClass : externClasses) {
             switch (externClass.getKind()) {
@@ -155,7 +157,8 @@ public class ClassWriter extends BaseWriter {
                     EnumWriter.writeInnerEnum(out, externClass, prefixedClassName, indent);
                     break;
                 default:
-                    write(out, "~~~INNERCLASS: %s%n", externClass.getKind());
+                    UnhandledReport.INSTANCE.record("INNERCLASS");
+                    out.print("~~~INNERCLASS: ").print(externClass.getKind()).newline();
             }
         }
     }
@@ -1,11 +1,16 @@
 package com.elitemastereric.writer;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
 
-import com.elitemastereric.ElementUtils;
+import com.elitemastereric.RunStats;
 import com.sun.source.doctree.AttributeTree;
 import com.sun.source.doctree.AuthorTree;
 import com.sun.source.doctree.CommentTree;
@@ -38,12 +43,49 @@ import com.sun.source.doctree.ValueTree;
 import com.sun.source.doctree.VersionTree;
 import com.sun.source.util.DocTrees;
 
-public class DocumentationBuilder implements DocTreeVisitor<String, Void> {
+public class DocumentationBuilder implements DocTreeVisitor<StringBuilder, StringBuilder> {
 
     public static final DocumentationBuilder INSTANCE = new DocumentationBuilder();
 
+    /**
+     * How much of each doc comment to write.
+     */
+    public enum Level {
+        /**
+         * Don't write documentation. Doc comments aren't even parsed.
+         */
+        NONE,
+        /**
+         * Write only the first sentence of each doc comment.
+         */
+        SUMMARY,
+        /**
+         * Write the full body and block tags of each doc comment.
+         */
+        FULL
+    }
+
     private DocTrees docTrees = null;
 
+    private Level level = Level.FULL;
+
+    /**
+     * The element whose documentation is being built on each thread, which {@code {@inheritDoc}} refers to.
+     */
+    private final ThreadLocal<Element> currentElement = new ThreadLocal<>();
+
+    /**
+     * The rendered description of each method, for the methods which inherit it, so a method overridden
+     * many times is only rendered once. Undocumented methods map to an empty string.
+     * Filled in by {@link #resolveInheritedDocs} on the main thread, and only read while writing.
+     */
+    private final ConcurrentHashMap<ExecutableElement, String> inheritedDocs = new ConcurrentHashMap<>();
+
+    /**
+     * Whether {@link #resolveInheritedDocs} is running, and so missing descriptions are rendered.
+     */
+    private boolean resolving = false;
+
     public DocTrees getDocTrees() {
         if (docTrees == null)
             throw new IllegalStateException("docTrees not set");
@@ -54,198 +96,356 @@ public class DocumentationBuilder implements DocTreeVisitor<String, Void> {
         this.docTrees = docTrees;
     }
 
-    public static void writeDocs(OutputStream out, Element element, int indent) throws IOException {
+    public Level getLevel() {
+        return level;
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Forgets the inherited documentation. Called at the start of each run, since elements belong to one compiler.
+     */
+    public void resetCache() {
+        inheritedDocs.clear();
+    }
+
+    public static void writeDocs(HaxePrinter out, Element element, int indent) throws IOException {
+        RunStats.Frame frame = RunStats.INSTANCE.enter();
+        try {
+            writeDocsUntimed(out, element, indent);
+        } finally {
+            RunStats.INSTANCE.exit("DocumentationBuilder", frame);
+        }
+    }
+
+    private static void writeDocsUntimed(HaxePrinter out, Element element, int indent) throws IOException {
         String docs = buildDocs(element);
         
         if (docs == null) return; // Element is undocumented
-        
-        BaseWriter.writeIndent(out, indent);
-        BaseWriter.write(out, "/**%n");
-        
-        String[] docsLines = docs.split("\n");
-        for (String docsLine : docsLines) {
-            BaseWriter.writeIndent(out, indent);
-            BaseWriter.write(out, " * %s%n", docsLine);
-        }
 
-        BaseWriter.writeIndent(out, indent);
-        BaseWriter.write(out, " */%n");
+        out.indent(indent).println("/**");
+
+        // Trailing empty lines are dropped.
+        int end = docs.length();
+        while (end > 0 && docs.charAt(end - 1) == '\n') end--;
+
+        int start = 0;
+        do {
+            int lineEnd = docs.indexOf('\n', start);
+            if (lineEnd < 0 || lineEnd > end) lineEnd = end;
+
+            out.indent(indent).print(" * ").print(docs, start, lineEnd).newline();
+
+            start = lineEnd + 1;
+        } while (start <= end);
+
+        out.indent(indent).println(" */");
     }
 
+    /**
+     * @return The documentation for the given element, or null if it is undocumented
+     *         or documentation is turned off.
+     */
     public static String buildDocs(Element element) throws IOException {
+        if (INSTANCE.level == Level.NONE) return null;
+
         DocCommentTree docCommentTree = INSTANCE.getDocTrees().getDocCommentTree(element);
 
         if (docCommentTree == null)
             return null;
 
-        return docCommentTree.accept(INSTANCE, null);
+        Element previous = INSTANCE.currentElement.get();
+        INSTANCE.currentElement.set(element);
+        try {
+            return docCommentTree.accept(INSTANCE, new StringBuilder()).toString();
+        } finally {
+            INSTANCE.currentElement.set(previous);
+        }
+    }
+
+    /**
+     * Renders the descriptions which the {@code {@inheritDoc}} tags of the given types and their members
+     * refer to. Called on the main thread before the types are written, since javac parses doc comments and
+     * completes symbols lazily, and isn't thread-safe while doing so.
+     */
+    public void resolveInheritedDocs(Set<TypeElement> elements) {
+        if (level == Level.NONE) return;
+
+        // Constructs in the rendered text are recorded each time it is used instead.
+        boolean muted = UnhandledReport.INSTANCE.setMuted(true);
+        resolving = true;
+        try {
+            for (TypeElement element : elements) {
+                resolveInheritedDocs(element);
+            }
+        } finally {
+            resolving = false;
+            UnhandledReport.INSTANCE.setMuted(muted);
+        }
+    }
+
+    private void resolveInheritedDocs(TypeElement element) {
+        for (Element innerElement : element.getEnclosedElements()) {
+            if (innerElement instanceof TypeElement) {
+                resolveInheritedDocs((TypeElement) innerElement);
+            } else if (innerElement.getKind() == ElementKind.METHOD && hasInheritDoc(innerElement)) {
+                for (ExecutableElement overridden : TypeHierarchy.INSTANCE
+                        .getOverriddenMethods((ExecutableElement) innerElement)) {
+                    if (!renderInheritedDocs(overridden).isEmpty()) break;
+                }
+            }
+        }
+    }
+
+    private boolean hasInheritDoc(Element element) {
+        DocCommentTree docCommentTree = getDocTrees().getDocCommentTree(element);
+        if (docCommentTree == null) return false;
+
+        for (DocTree node : docCommentTree.getFullBody()) {
+            if (node.getKind() == DocTree.Kind.INHERIT_DOC) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The rendered description of the given method, or an empty string if it has none.
+     */
+    private String renderInheritedDocs(ExecutableElement method) {
+        String result = inheritedDocs.get(method);
+        if (result != null) return result;
+
+        result = "";
+        DocCommentTree docCommentTree = getDocTrees().getDocCommentTree(method);
+        if (docCommentTree != null) {
+            List<? extends DocTree> body = level == Level.SUMMARY ? docCommentTree.getFirstSentence()
+                    : docCommentTree.getFullBody();
+
+            // The method may inherit its own description in turn.
+            Element previous = currentElement.get();
+            currentElement.set(method);
+            try {
+                StringBuilder out = new StringBuilder();
+                for (DocTree innerNode : body) {
+                    innerNode.accept(this, out);
+                }
+                result = out.toString();
+            } finally {
+                currentElement.set(previous);
+            }
+        }
+
+        String previous = inheritedDocs.putIfAbsent(method, result);
+        return previous != null ? previous : result;
     }
 
     @Override
-    public String visitAttribute(AttributeTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCATTRIBUTE: " + node.getName() + " = " + node.getValue());
+    public StringBuilder visitAttribute(AttributeTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCATTRIBUTE");
+        return out.append("~~~DOCATTRIBUTE: ").append(node.getName()).append(" = ").append(node.getValue());
     }
 
     @Override
-    public String visitAuthor(AuthorTree node, Void _v) {
-        return ElementUtils.escapeFormat("@author " + node.getName());
+    public StringBuilder visitAuthor(AuthorTree node, StringBuilder out) {
+        return out.append("@author ").append(node.getName());
     }
 
     @Override
-    public String visitComment(CommentTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~COMMENT: " + node.getBody());
+    public StringBuilder visitComment(CommentTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("COMMENT");
+        return out.append("~~~COMMENT: ").append(node.getBody());
     }
 
     @Override
-    public String visitDeprecated(DeprecatedTree node, Void _v) {
-        return ElementUtils.escapeFormat("@deprecated " + node.getBody());
+    public StringBuilder visitDeprecated(DeprecatedTree node, StringBuilder out) {
+        return out.append("@deprecated ").append(node.getBody());
     }
 
     @Override
-    public String visitDocComment(DocCommentTree node, Void _v) {
+    public StringBuilder visitDocComment(DocCommentTree node, StringBuilder out) {
         // A documentation comment comprised of multiple documentation nodes.
 
+        if (level == Level.SUMMARY) {
+            for (DocTree innerNode : node.getFirstSentence()) {
+                innerNode.accept(this, out);
+            }
+            return out;
+        }
+
         // The body of the comment.
-        String result = node.getFullBody().stream().map((innerNode) -> innerNode.accept(this, null)).reduce("", String::concat);
-            
+        for (DocTree innerNode : node.getFullBody()) {
+            innerNode.accept(this, out);
+        }
+
         // The block tags of the comment.
-        result += node.getBlockTags().stream().map((innerNode) -> innerNode.accept(this, null)).reduce("", String::concat);
+        for (DocTree innerNode : node.getBlockTags()) {
+            innerNode.accept(this, out);
+        }
 
-        return result;
+        return out;
     }
 
     @Override
-    public String visitDocRoot(DocRootTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCDOCROOT: " + node.toString());
+    public StringBuilder visitDocRoot(DocRootTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCDOCROOT");
+        return out.append("~~~DOCDOCROOT: ").append(node.toString());
     }
 
     @Override
-    public String visitEndElement(EndElementTree node, Void _v) {
+    public StringBuilder visitEndElement(EndElementTree node, StringBuilder out) {
         // A documentation HTML element, such as </p> or </ul>.
-        return ElementUtils.escapeFormat("");
+        return out;
     }
 
     @Override
-    public String visitEntity(EntityTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCENTITY: " + node.getName());
+    public StringBuilder visitEntity(EntityTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCENTITY");
+        return out.append("~~~DOCENTITY: ").append(node.getName());
     }
 
     @Override
-    public String visitErroneous(ErroneousTree node, Void _v) {
+    public StringBuilder visitErroneous(ErroneousTree node, StringBuilder out) {
         // Parser couldn't understand this malformed documentation node.
         // Just print it.
-        return ElementUtils.escapeFormat(node.getBody());
+        return out.append(node.getBody());
     }
 
     @Override
-    public String visitIdentifier(IdentifierTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCIDENTIFIER: " + node.getName());
+    public StringBuilder visitIdentifier(IdentifierTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCIDENTIFIER");
+        return out.append("~~~DOCIDENTIFIER: ").append(node.getName());
     }
 
     @Override
-    public String visitInheritDoc(InheritDocTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCINHERITDOC: " + node.toString());
+    public StringBuilder visitInheritDoc(InheritDocTree node, StringBuilder out) {
+        // Use the description of the first overridden method which has one.
+        Element element = currentElement.get();
+        if (element instanceof ExecutableElement) {
+            for (ExecutableElement overridden : TypeHierarchy.INSTANCE.getOverriddenMethods((ExecutableElement) element)) {
+                String docs = resolving ? renderInheritedDocs(overridden) : inheritedDocs.get(overridden);
+                if (docs == null) break;
+                if (docs.isEmpty()) continue;
+
+                // Constructs in reused text are recorded against each method using it.
+                UnhandledReport.INSTANCE.recordMarkers(docs);
+                return out.append(docs);
+            }
+        }
+
+        UnhandledReport.INSTANCE.record("DOCINHERITDOC");
+        return out.append("~~~DOCINHERITDOC: ").append(node.toString());
     }
 
     @Override
-    public String visitLink(LinkTree node, Void _v) {
+    public StringBuilder visitLink(LinkTree node, StringBuilder out) {
         // In Java, this is {@link link}
         // In Haxe, this is `full.path.to.link`
 
-        return String.format("`%s`", node.getReference().accept(this, null));
+        out.append('`');
+        node.getReference().accept(this, out);
+        return out.append('`');
     }
 
     @Override
-    public String visitLiteral(LiteralTree node, Void _v) {
+    public StringBuilder visitLiteral(LiteralTree node, StringBuilder out) {
         // In Java, this is {@code text}
         // In Haxe, this is `text`
 
-        return ElementUtils.escapeFormat("`" + node.getBody() + "`");
+        return out.append("`").append(node.getBody()).append("`");
     }
 
     @Override
-    public String visitParam(ParamTree node, Void _v) {
-        return ElementUtils.escapeFormat("@param : " + node.getName() + " " + node.getDescription());
+    public StringBuilder visitParam(ParamTree node, StringBuilder out) {
+        return out.append("@param : ").append(node.getName()).append(" ").append(node.getDescription());
     }
 
     @Override
-    public String visitReference(ReferenceTree node, Void _v) {
+    public StringBuilder visitReference(ReferenceTree node, StringBuilder out) {
         // A package.name.class#member reference.
 
-        return node.getSignature();
+        return out.append(node.getSignature());
     }
 
     @Override
-    public String visitReturn(ReturnTree node, Void _v) {
-        return ElementUtils.escapeFormat("@return " + node.getDescription());
+    public StringBuilder visitReturn(ReturnTree node, StringBuilder out) {
+        return out.append("@return ").append(node.getDescription());
     }
 
     @Override
-    public String visitSee(SeeTree node, Void _v) {
-        return ElementUtils.escapeFormat("@see " + node.getReference());
+    public StringBuilder visitSee(SeeTree node, StringBuilder out) {
+        return out.append("@see ").append(node.getReference());
     }
 
     @Override
-    public String visitSerial(SerialTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCSERIAL: " + node.toString());
+    public StringBuilder visitSerial(SerialTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCSERIAL");
+        return out.append("~~~DOCSERIAL: ").append(node.toString());
     }
 
     @Override
-    public String visitSerialData(SerialDataTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCSERIALDATA: " + node.toString());
+    public StringBuilder visitSerialData(SerialDataTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCSERIALDATA");
+        return out.append("~~~DOCSERIALDATA: ").append(node.toString());
     }
 
     @Override
-    public String visitSerialField(SerialFieldTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCSERIALFIELD: " + node.getName() + " " + node.getDescription());
+    public StringBuilder visitSerialField(SerialFieldTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCSERIALFIELD");
+        return out.append("~~~DOCSERIALFIELD: ").append(node.getName()).append(" ").append(node.getDescription());
     }
 
     @Override
-    public String visitSince(SinceTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCSINCE: " + node.getBody());
+    public StringBuilder visitSince(SinceTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCSINCE");
+        return out.append("~~~DOCSINCE: ").append(node.getBody());
     }
 
     @Override
-    public String visitStartElement(StartElementTree node, Void _v) {
+    public StringBuilder visitStartElement(StartElementTree node, StringBuilder out) {
         // A documentation HTML element, such as <p> or <ul>.
-        return ElementUtils.escapeFormat("");
+        return out;
     }
 
     @Override
-    public String visitText(TextTree node, Void _v) {
+    public StringBuilder visitText(TextTree node, StringBuilder out) {
         // A line of documentation that's just a string.
-        return ElementUtils.escapeFormat(node.getBody());
+        return out.append(node.getBody());
     }
 
     @Override
-    public String visitThrows(ThrowsTree node, Void _v) {
+    public StringBuilder visitThrows(ThrowsTree node, StringBuilder out) {
         // Throws an exception of the given type under the given circumstances.
-        return ElementUtils.escapeFormat("@throws " + node.getExceptionName() + " " + node.getDescription());
+        return out.append("@throws ").append(node.getExceptionName()).append(" ").append(node.getDescription());
     }
 
     @Override
-    public String visitUnknownBlockTag(UnknownBlockTagTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCUNKNOWNBLOCKTAG: " + node.getTagName() + " " + node.getContent());
+    public StringBuilder visitUnknownBlockTag(UnknownBlockTagTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCUNKNOWNBLOCKTAG");
+        return out.append("~~~DOCUNKNOWNBLOCKTAG: ").append(node.getTagName()).append(" ").append(node.getContent());
     }
 
     @Override
-    public String visitUnknownInlineTag(UnknownInlineTagTree node, Void _v) {
+    public StringBuilder visitUnknownInlineTag(UnknownInlineTagTree node, StringBuilder out) {
         // Try using it as an attribute.
-        return ElementUtils.escapeFormat("@" + node.getTagName() + " " + node.getContent());
+        return out.append("@").append(node.getTagName()).append(" ").append(node.getContent());
     }
 
     @Override
-    public String visitValue(ValueTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCVALUE: " + node.toString());
+    public StringBuilder visitValue(ValueTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCVALUE");
+        return out.append("~~~DOCVALUE: ").append(node.toString());
     }
 
     @Override
-    public String visitVersion(VersionTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCVERSION: " + node.getBody());
+    public StringBuilder visitVersion(VersionTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCVERSION");
+        return out.append("~~~DOCVERSION: ").append(node.getBody());
     }
 
     @Override
-    public String visitOther(DocTree node, Void _v) {
-        return ElementUtils.escapeFormat("~~~DOCOTHER: " + node.toString());
+    public StringBuilder visitOther(DocTree node, StringBuilder out) {
+        UnhandledReport.INSTANCE.record("DOCOTHER");
+        return out.append("~~~DOCOTHER: ").append(node.toString());
     }
 }
@@ -24,11 +24,13 @@ public class ElementBuilder implements ElementVisitor<String, Void> {
 
     @Override
     public String visitPackage(PackageElement e, Void _v) {
+        UnhandledReport.INSTANCE.record("PACKAGEELEMENT");
         return "~~~PACKAGEELEMENT: " + e.getQualifiedName();
     }
 
     @Override
     public String visitType(TypeElement e, Void _v) {
+        UnhandledReport.INSTANCE.record("TYPEELEMENT");
         return "~~~TYPEELEMENT: " + e.getSimpleName() + "~" + e.getQualifiedName();
     }
 
@@ -39,16 +41,19 @@ public class ElementBuilder implements ElementVisitor<String, Void> {
 
     @Override
     public String visitExecutable(ExecutableElement e, Void _v) {
+        UnhandledReport.INSTANCE.record("EXECUTABLEELEMENT");
         return "~~~EXECUTABLEELEMENT: " + e.getSimpleName();
     }
 
     @Override
     public String visitTypeParameter(TypeParameterElement e, Void _v) {
+        UnhandledReport.INSTANCE.record("TYPEPARAMETERELEMENT");
         return "~~~TYPEPARAMETERELEMENT: " + e.getSimpleName();
     }
 
     @Override
     public String visitUnknown(Element e, Void _v) {
+        UnhandledReport.INSTANCE.record("UNKNOWNELEMENT");
         return "~~~UNKNOWNELEMENT: " + e.toString();
     }
 
@@ -1,13 +1,13 @@
 package com.elitemastereric.writer;
 
 import java.io.IOException;
-import java.io.OutputStream;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 
@@ -21,11 +21,11 @@ public class EnumWriter extends BaseWriter {
      * @param element The enum to write.
      * @throws IOException
      */
-    public static void writeEnum(OutputStream out, TypeElement element, int indent) throws IOException {
+    public static void writeEnum(HaxePrinter out, TypeElement element, int indent) throws IOException {
         writeInnerEnum(out, element, "", indent);
     }
 
-    public static void writeInnerEnum(OutputStream out, TypeElement element, String prefix, int indent) throws IOException {
+    public static void writeInnerEnum(HaxePrinter out, TypeElement element, String prefix, int indent) throws IOException {
         String packageName = ElementUtils.getPackageName(element);
 
         String enumName = element.getSimpleName().toString();
@@ -62,15 +62,16 @@ public class EnumWriter extends BaseWriter {
                     isSealed = true;
                     break;
                 default:
-                    write(out, "~~~ENUMMODIFIER: %s%n", modifier);
+                    UnhandledReport.INSTANCE.record("ENUMMODIFIER");
+                    out.print("~~~ENUMMODIFIER: ").print(modifier).newline();
             }
         }
 
         //
         // DON'T WRITE THE INTERFACE IF IT'S PRIVATE
         //
-        if (isPrivate) {
-            cancelQueue();
+        if (!hasExtern(element)) {
+            out.cancelQueue();
             return;
         }
 
@@ -102,20 +103,23 @@ public class EnumWriter extends BaseWriter {
         }
 
         if (indent == 0 && packageName.isBlank()) {
-            write(out, "package %s;%n%n", packageName);
+            out.print("package ").print(packageName).println(";").newline();
         }
 
         DocumentationBuilder.writeDocs(out, element, indent);
 
-        writeIndent(out, indent);
-        write(out, "@:native('%s')%n", element.getQualifiedName());
+        out.indent(indent).print("@:native('").print(element.getQualifiedName()).println("')");
 
-        writeIndent(out, indent);
-        write(out, "%s%sextern class %s extends java.lang.Enum<%s>%n", isAbstract ? "abstract " : "", isFinal ? "final " : "",
-                prefixedEnumName, element.getQualifiedName());
+        StringBuilder interfaces = new StringBuilder();
+        for (DeclaredType superinterface : TypeHierarchy.INSTANCE.getInterfaces(element)) {
+            interfaces.append(" implements ").append(TypeBuilder.buildType(superinterface));
+        }
+
+        out.indent(indent).print(isAbstract ? "abstract " : "").print(isFinal ? "final " : "").print("extern class ")
+                .print(prefixedEnumName).print(" extends java.lang.Enum<").print(NameTable.getHaxeName(element)).print(">")
+                .println(interfaces);
         
-        writeIndent(out, indent);
-        write(out, "{%n");
+        out.indent(indent).println("{");
 
         boolean firstElement = true;
         for (Element innerElement : element.getEnclosedElements()) {
@@ -125,21 +129,20 @@ public class EnumWriter extends BaseWriter {
             if (firstElement) {
                 firstElement = false;
             } else {
-                queueWrite(out, "%n");
+                out.queueNewline();
             }
         }
 
-        writeIndent(out, indent);
-        write(out, "}%n");
+        out.indent(indent).println("}");
     }
 
     /**
      * Writes the given enum constant, as Haxe, to the given stream.
      */
-    public static void writeEnumConstant(OutputStream out, VariableElement element, int indent) throws IOException {
+    public static void writeEnumConstant(HaxePrinter out, VariableElement element, int indent) throws IOException {
         DocumentationBuilder.writeDocs(out, element, indent);
 
-        writeIndent(out, indent);
-        write(out, "public static var %s:%s;%n", element.getSimpleName(), TypeBuilder.buildType(element.asType()));
+        out.indent(indent).print("public static var ").print(element.getSimpleName()).print(":")
+                .print(TypeBuilder.buildType(element.asType())).println(";");
     }
 }
@@ -1,7 +1,6 @@
 package com.elitemastereric.writer;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.Arrays;
 
 import javax.lang.model.element.ExecutableElement;
@@ -21,7 +20,7 @@ public class ExecutableWriter extends BaseWriter {
      * @param element The class to write.
      * @throws IOException
      */
-    public static void writeExecutable(OutputStream out, ExecutableElement element, int indent)
+    public static void writeExecutable(HaxePrinter out, ExecutableElement element, int indent)
             throws IOException {
         boolean isPublic = false;
         boolean isPrivate = false;
@@ -58,7 +57,8 @@ public class ExecutableWriter extends BaseWriter {
                     isSynchronized = true;
                     break;
                 default:
-                    write(out, "~~~EXECUTABLEMODIFIER: %s%n", modifier);
+                    UnhandledReport.INSTANCE.record("EXECUTABLEMODIFIER");
+                    out.print("~~~EXECUTABLEMODIFIER: ").print(modifier).newline();
             }
         }
 
@@ -66,11 +66,14 @@ public class ExecutableWriter extends BaseWriter {
         // DON'T WRITE THE FIELD IF IT'S PRIVATE
         //
         if (isPrivate) {
-            cancelQueue();
+            out.cancelQueue();
             return;
         }
         
         String fieldName = element.getSimpleName().toString();
+
+        // Haxe wants overrides of methods in the classes a class extends to be marked.
+        boolean isOverride = !isStatic && TypeHierarchy.INSTANCE.overridesSuperclassMethod(element);
         
         boolean isConstructor = ElementUtils.isConstructor(element);
         if (isConstructor) {
@@ -80,27 +83,28 @@ public class ExecutableWriter extends BaseWriter {
 
         String returnType = "";
                 
-        if (ElementUtils.isNullable(element)) {
-            returnType = String.format(":Null<%s>", TypeBuilder.buildType(element.getReturnType()));
+        // Type use annotations on the return type are already handled by the type builder.
+        if (ElementUtils.isNullable(element) && !ElementUtils.isNullable(element.getReturnType())) {
+            returnType = ":Null<" + TypeBuilder.buildType(element.getReturnType()) + ">";
         } else if (!isConstructor) {
-            returnType = String.format(":%s", TypeBuilder.buildType(element.getReturnType()));
+            returnType = ":" + TypeBuilder.buildType(element.getReturnType());
         }
         // else keep it empty
 
-        String parameterList = "";
+        StringBuilder parameterList = new StringBuilder();
         int elementNameIndex = 0;
         for (VariableElement parameter : element.getParameters()) {
             String parameterName = parameter.getSimpleName().toString();
             if (parameterName.isEmpty()) {
-                parameterName = String.format("arg%d", elementNameIndex);
+                parameterName = "arg" + elementNameIndex;
             }
             String parameterType = TypeBuilder.buildType(parameter.asType());
-            if (ElementUtils.isNullable(parameter)) {
-                parameterType = String.format("Null<%s>", parameterType);
+            if (ElementUtils.isNullable(parameter) && !ElementUtils.isNullable(parameter.asType())) {
+                parameterType = "Null<" + parameterType + ">";
             }
-            parameterList += String.format("%s:%s", parameterName, parameterType);
+            parameterList.append(parameterName).append(':').append(parameterType);
             if (elementNameIndex < element.getParameters().size() - 1) {
-                parameterList += ", ";
+                parameterList.append(", ");
             }
             elementNameIndex++;
         }
@@ -108,15 +112,12 @@ public class ExecutableWriter extends BaseWriter {
         DocumentationBuilder.writeDocs(out, element, indent);
         
         if (BaseWriter.RESERVED_NAMES.contains(fieldName)) {
-            fieldName = String.format("do%s", fieldName);
+            fieldName = "do" + fieldName;
 
-            writeIndent(out, indent);
-            write(out, "@:native('%s')%n", element.getSimpleName());
+            out.indent(indent).print("@:native('").print(element.getSimpleName()).println("')");
         }
         
-        writeIndent(out, indent);
-        write(out, "%s%s%sfunction %s(%s)%s;%n", isPublic ? "public " : "", isStatic ? "static " : "",
-                isFinal ? "final " : "",
-                fieldName, parameterList == null ? "" : parameterList, returnType);
+        out.indent(indent).print(isOverride ? "override " : "").print(isPublic ? "public " : "").print(isStatic ? "static " : "").print(isFinal ? "final " : "")
+                .print("function ").print(fieldName).print("(").print(parameterList).print(")").print(returnType).println(";");
     }
 }
@@ -1,7 +1,6 @@
 package com.elitemastereric.writer;
 
 import java.io.IOException;
-import java.io.OutputStream;
 
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.VariableElement;
@@ -14,7 +13,7 @@ public class FieldWriter extends BaseWriter {
      * @param element The class to write.
      * @throws IOException
      */
-    public static void writeField(OutputStream out, VariableElement element, int indent) throws IOException {
+    public static void writeField(HaxePrinter out, VariableElement element, int indent) throws IOException {
         boolean isPublic = false;
         boolean isPrivate = false;
         boolean isFinal = false;
@@ -42,7 +41,8 @@ public class FieldWriter extends BaseWriter {
                     isVolatile = true;
                     break;
                 default:
-                    write(out, "~~~FIELDMODIFIER: %s%n", modifier);
+                    UnhandledReport.INSTANCE.record("FIELDMODIFIER");
+                    out.print("~~~FIELDMODIFIER: ").print(modifier).newline();
             }
         }
 
@@ -50,7 +50,7 @@ public class FieldWriter extends BaseWriter {
         // DON'T WRITE THE FIELD IF IT'S PRIVATE
         //
         if (isPrivate || !isPublic) {
-            cancelQueue();
+            out.cancelQueue();
             return;
         }
 
@@ -59,8 +59,7 @@ public class FieldWriter extends BaseWriter {
 
         DocumentationBuilder.writeDocs(out, element, indent);
 
-        writeIndent(out, indent);
-        write(out, "%s%s%s%s:%s;%n", isPublic ? "public " : "", isStatic ? "static " : "",
-                isFinal ? "final " : "var ", fieldName, typeName);
+        out.indent(indent).print(isPublic ? "public " : "").print(isStatic ? "static " : "")
+                .print(isFinal ? "final " : "var ").print(fieldName).print(":").print(typeName).println(";");
     }
 }
@@ -0,0 +1,139 @@
+package com.elitemastereric.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.elitemastereric.Main;
+
+/**
+ * Writes every generated Haxe file into a single zip archive, instead of a directory tree.
+ *
+ * Entries are written one at a time, in the order they are opened. Every entry gets the same timestamp,
+ * so the same files in the same order always produce the same archive.
+ * The archive is written next to its destination and moved into place when closed.
+ */
+public class HaxeArchive implements Closeable {
+    /**
+     * The earliest time a zip entry can hold, used for every entry.
+     */
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(1980, 1, 1, 0, 0);
+
+    /**
+     * Where Haxe files go inside a haxelib archive.
+     */
+    private static final String HAXELIB_CLASS_PATH = "src/";
+
+    private final File file;
+    private final File tempFile;
+    private final ZipOutputStream zip;
+
+    /**
+     * The directory inside the archive that Haxe files are written to.
+     */
+    private final String prefix;
+
+    private int entryCount = 0;
+
+    /**
+     * @param haxelibName If not null, the archive is laid out as a haxelib with this name: a haxelib.json at
+     *                    the root, and the Haxe files in its class path.
+     */
+    public HaxeArchive(File file, String haxelibName) throws IOException {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+
+        this.zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+
+        if (haxelibName != null) {
+            prefix = HAXELIB_CLASS_PATH;
+            writeHaxelibJson(haxelibName);
+        } else {
+            prefix = "";
+        }
+    }
+
+    private void writeHaxelibJson(String name) throws IOException {
+        String json = "{\n"
+                + "  \"name\": \"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\",\n"
+                + "  \"version\": \"1.0.0\",\n"
+                + "  \"description\": \"Haxe externs generated by java-haxe-extern-creator v" + Main.VERSION + ".\",\n"
+                + "  \"classPath\": \"" + HAXELIB_CLASS_PATH + "\"\n"
+                + "}\n";
+
+        try (OutputStream out = openEntry("haxelib.json", false)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Starts the entry for a Haxe file. The previous entry must have been closed.
+     *
+     * @param path The path of the Haxe file, as returned by {@link BaseWriter#getHaxePath}.
+     * @return A stream to write the file to. Closing it finishes the entry, but not the archive.
+     */
+    public OutputStream openEntry(String path) throws IOException {
+        return openEntry(prefix + path, true);
+    }
+
+    private OutputStream openEntry(String name, boolean counted) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTimeLocal(ENTRY_TIME);
+        zip.putNextEntry(entry);
+        if (counted) entryCount++;
+
+        return new FilterOutputStream(zip) {
+            private boolean closed = false;
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() {
+                // Everything is written out when the archive is closed.
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) return;
+                closed = true;
+                zip.closeEntry();
+            }
+        };
+    }
+
+    /**
+     * @return The number of Haxe files written so far.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Finishes the archive and moves it into place.
+     */
+    @Override
+    public void close() throws IOException {
+        zip.close();
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
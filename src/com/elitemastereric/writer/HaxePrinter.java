@@ -0,0 +1,245 @@
+package com.elitemastereric.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Prints Haxe source to an output stream, or into memory.
+ *
+ * Text is encoded as UTF-8 straight into a reusable buffer, which is written to the stream when it fills up
+ * or when the printer is flushed. Writes can also be queued, so they can be cancelled if the element being
+ * written turns out to be private.
+ */
+public class HaxePrinter {
+    static final String INDENT = "  ";
+
+    /**
+     * Indentation strings for the common indent levels, so they don't have to be built for every line.
+     */
+    private static final String[] INDENTS = new String[16];
+
+    static {
+        INDENTS[0] = "";
+        for (int i = 1; i < INDENTS.length; i++) {
+            INDENTS[i] = INDENTS[i - 1] + INDENT;
+        }
+    }
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private static final byte[] LINE_SEPARATOR_BYTES = LINE_SEPARATOR.getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Queued for line breaks. Never written to, so it can be shared.
+     */
+    private static final ByteSink LINE_SEPARATOR_SINK = new ByteSink(LINE_SEPARATOR_BYTES.length);
+
+    static {
+        LINE_SEPARATOR_SINK.write(LINE_SEPARATOR_BYTES, 0, LINE_SEPARATOR_BYTES.length);
+    }
+
+    /**
+     * How much a printer buffers before writing to its stream.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The stream to write to, or null if this printer only prints into memory.
+     */
+    private final OutputStream out;
+
+    private final ByteSink buffer;
+
+    /**
+     * Writes which are held back until the next direct write.
+     */
+    private final ArrayList<ByteSink> writeQueue = new ArrayList<ByteSink>();
+
+    public HaxePrinter(OutputStream out) {
+        this.out = out;
+        this.buffer = new ByteSink(BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a printer which keeps everything it prints in memory. See {@link #getBytes()}.
+     */
+    public HaxePrinter() {
+        this.out = null;
+        this.buffer = new ByteSink();
+    }
+
+    /**
+     * @return Everything printed so far, for a printer which prints into memory.
+     */
+    public ByteSink getBytes() {
+        return buffer;
+    }
+
+    /**
+     * @return The whitespace to write before a line at the given indent.
+     */
+    public static String getIndent(int indent) {
+        if (indent <= 0) return INDENTS[0];
+        if (indent < INDENTS.length) return INDENTS[indent];
+        return INDENT.repeat(indent);
+    }
+
+    /**
+     * Writes the given text, after anything that was queued.
+     */
+    public HaxePrinter print(CharSequence text) throws IOException {
+        if (text == null) text = "null";
+        return print(text, 0, text.length());
+    }
+
+    /**
+     * Writes part of the given text, after anything that was queued.
+     */
+    public HaxePrinter print(CharSequence text, int start, int end) throws IOException {
+        if (start >= end) return this;
+
+        flushQueue();
+        encode(text, start, end);
+        return this;
+    }
+
+    public HaxePrinter print(Object value) throws IOException {
+        return print(String.valueOf(value));
+    }
+
+    /**
+     * Writes the given text followed by a line break.
+     */
+    public HaxePrinter println(CharSequence text) throws IOException {
+        return print(text).newline();
+    }
+
+    /**
+     * Writes a line break, unless the last queued write already ended with one.
+     */
+    public HaxePrinter newline() throws IOException {
+        if (isLastWriteQueueNewLine()) return this;
+
+        return print(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes the indentation for a line at the given indent.
+     */
+    public HaxePrinter indent(int indent) throws IOException {
+        if (indent <= 0) return this;
+
+        return print(getIndent(indent));
+    }
+
+    /**
+     * Queues the given bytes, to be written before the next direct write.
+     * The sink is written as it is when the queue is flushed, so it mustn't be changed until then.
+     */
+    public void queue(ByteSink bytes) {
+        if (bytes == null) return;
+
+        writeQueue.add(bytes);
+    }
+
+    /**
+     * Queues a line break, unless the last queued write already ended with one.
+     */
+    public void queueNewline() {
+        if (isLastWriteQueueNewLine()) return;
+
+        writeQueue.add(LINE_SEPARATOR_SINK);
+    }
+
+    boolean isLastWriteQueueNewLine() {
+        if (writeQueue.isEmpty()) return false;
+
+        return writeQueue.get(writeQueue.size() - 1).endsWith(LINE_SEPARATOR_BYTES);
+    }
+
+    /**
+     * Writes everything that was queued.
+     */
+    public void flushQueue() throws IOException {
+        if (writeQueue.isEmpty()) return;
+
+        for (ByteSink bytes : writeQueue) {
+            reserve(bytes.count);
+            if (out != null && bytes.count > BUFFER_SIZE) {
+                // Too big to be worth buffering.
+                bytes.writeTo(out);
+            } else {
+                buffer.write(bytes.buf, 0, bytes.count);
+            }
+        }
+        writeQueue.clear();
+    }
+
+    /**
+     * Discards everything that was queued.
+     */
+    public void cancelQueue() {
+        writeQueue.clear();
+    }
+
+    /**
+     * Writes the buffered bytes to the output stream. Queued writes are kept queued.
+     * Does nothing for a printer which prints into memory.
+     */
+    public void flush() throws IOException {
+        if (out == null) return;
+
+        if (buffer.count > 0) {
+            buffer.writeTo(out);
+            buffer.reset();
+        }
+        out.flush();
+    }
+
+    /**
+     * Makes room in the buffer for the given number of bytes,
+     * writing the buffer out first if they wouldn't fit.
+     */
+    private void reserve(int length) throws IOException {
+        if (out != null && buffer.count > 0 && buffer.count + length > BUFFER_SIZE) {
+            buffer.writeTo(out);
+            buffer.reset();
+        }
+        buffer.ensureCapacity(length);
+    }
+
+    /**
+     * Encodes text as UTF-8 into the buffer.
+     */
+    private void encode(CharSequence text, int start, int end) throws IOException {
+        // No character takes more than 3 bytes per UTF-16 unit.
+        reserve((end - start) * 3);
+
+        byte[] buffer = this.buffer.buf;
+        int count = this.buffer.count;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[count++] = (byte) (0xC0 | (c >> 6));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates can't be encoded, so replace them like String.getBytes does.
+                buffer[count++] = (byte) '?';
+            } else {
+                buffer[count++] = (byte) (0xE0 | (c >> 12));
+                buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        this.buffer.count = count;
+    }
+}
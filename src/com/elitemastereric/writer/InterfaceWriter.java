@@ -1,7 +1,6 @@
 package com.elitemastereric.writer;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.ArrayList;
 
 import javax.lang.model.element.Element;
@@ -9,6 +8,7 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 
@@ -22,7 +22,7 @@ public class InterfaceWriter extends BaseWriter {
      * @param element The class to write.
      * @throws IOException
      */
-    public static void writeInterface(OutputStream out, TypeElement element, int indent) throws IOException {
+    public static void writeInterface(HaxePrinter out, TypeElement element, int indent) throws IOException {
         String packageName = ElementUtils.getPackageName(element);
         String interfaceName = element.getSimpleName().toString();
 
@@ -53,15 +53,16 @@ public class InterfaceWriter extends BaseWriter {
                     isAbstract = true;
                     break;
                 default:
-                    write(out, "~~~INTERFACEMODIFIER: %s%n", modifier);
+                    UnhandledReport.INSTANCE.record("INTERFACEMODIFIER");
+                    out.print("~~~INTERFACEMODIFIER: ").print(modifier).newline();
             }
         }
 
         //
         // DON'T WRITE THE INTERFACE IF IT'S PRIVATE
         //
-        if (isPrivate) {
-            cancelQueue();
+        if (!hasExtern(element)) {
+            out.cancelQueue();
             return;
         }
 
@@ -92,20 +93,24 @@ public class InterfaceWriter extends BaseWriter {
         }
 
         if (indent == 0) {
-            write(out, "package %s;%n%n", packageName);
+            out.print("package ").print(packageName).println(";").newline();
         }
 
         DocumentationBuilder.writeDocs(out, element, indent);
 
-        writeIndent(out, indent);
-        write(out, "@:native('%s')%n", element.getQualifiedName());
+        out.indent(indent).print("@:native('").print(element.getQualifiedName()).println("')");
 
-        writeIndent(out, indent);
-        write(out, "%s%sextern interface %s%s%n", isStatic ? "static " : "", isFinal ? "final " : "",
-                interfaceName, typeParamList.isEmpty() ? "" : "<" + typeParamList + ">");
+        // Haxe interfaces list each interface they extend with its own 'extends'.
+        StringBuilder supertypes = new StringBuilder();
+        for (DeclaredType superinterface : TypeHierarchy.INSTANCE.getInterfaces(element)) {
+            supertypes.append(" extends ").append(TypeBuilder.buildType(superinterface));
+        }
+
+        out.indent(indent).print(isStatic ? "static " : "").print(isFinal ? "final " : "").print("extern interface ")
+                .print(interfaceName).print(typeParamList.isEmpty() ? "" : "<" + typeParamList + ">")
+                .println(supertypes);
         
-        writeIndent(out, indent);
-        write(out, "{%n");
+        out.indent(indent).println("{");
 
         boolean firstElement = true;
         ArrayList<TypeElement> externClasses = new ArrayList<TypeElement>();
@@ -119,17 +124,14 @@ public class InterfaceWriter extends BaseWriter {
                 if (firstElement) {
                     firstElement = false;
                 } else {
-                    queueWrite(out, "%n");
+                    out.queueNewline();
                 }    
             }
 
-            // Handle references to the inner type.
-            //replaceQueue(qualifiedName, prefixedQualifiedName);
-            flushQueue(out);
+            out.flushQueue();
         }
 
-        writeIndent(out, indent);
-        write(out, "}%n");
+        out.indent(indent).println("}");
 
         for (TypeElement externClass : externClasses) {
             switch (externClass.getKind()) {
@@ -143,7 +145,8 @@ public class InterfaceWriter extends BaseWriter {
                     EnumWriter.writeInnerEnum(out, externClass, interfaceName, indent);
                     break;
                 default:
-                    write(out, "~~~INNERCLASS: %s%n", externClass.getKind());
+                    UnhandledReport.INSTANCE.record("INNERCLASS");
+                    out.print("~~~INNERCLASS: ").print(externClass.getKind()).newline();
             }
         }
     }
@@ -0,0 +1,95 @@
+package com.elitemastereric.writer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+
+import com.elitemastereric.ElementUtils;
+
+/**
+ * Maps each Java type being written to the path of the Haxe type it is written as.
+ *
+ * Inner types are written into the module of their outermost class, prefixed with the names of their
+ * enclosing classes, so {@code net.package.Outer.Inner} becomes {@code net.package.Outer.OuterInner}.
+ */
+public class NameTable {
+
+    public static final NameTable INSTANCE = new NameTable();
+
+    private Map<TypeElement, String> haxeNames = Map.of();
+
+    /**
+     * Packages whose types are written, though not necessarily in this run. Types in these packages which
+     * aren't in the table still get their Haxe name.
+     */
+    private Set<String> writtenPackages = Set.of();
+
+    /**
+     * Builds the table for the given type elements and every type nested inside them.
+     * Called once per run, before any types are written.
+     */
+    public void build(Set<TypeElement> elements) {
+        HashMap<TypeElement, String> result = new HashMap<>();
+        for (TypeElement element : elements) {
+            addType(result, element);
+        }
+        haxeNames = result;
+    }
+
+    private static void addType(Map<TypeElement, String> result, TypeElement element) {
+        if (result.containsKey(element)) return;
+
+        result.put(element, buildHaxeName(element));
+
+        for (Element innerElement : element.getEnclosedElements()) {
+            if (innerElement instanceof TypeElement) {
+                addType(result, (TypeElement) innerElement);
+            }
+        }
+    }
+
+    /**
+     * Sets the packages written across every run, when a run only writes some of them.
+     */
+    public void setWrittenPackages(Set<String> writtenPackages) {
+        this.writtenPackages = writtenPackages;
+    }
+
+    /**
+     * @return The Haxe path for the given type, ignoring the table.
+     */
+    static String buildHaxeName(TypeElement element) {
+        Element outermost = element;
+        String prefixedName = element.getSimpleName().toString();
+        while (outermost.getEnclosingElement() instanceof TypeElement) {
+            outermost = outermost.getEnclosingElement();
+            prefixedName = outermost.getSimpleName() + prefixedName;
+        }
+
+        // Top level types keep their Java name.
+        if (outermost == element) return element.getQualifiedName().toString();
+
+        String packageName = ElementUtils.getPackageName(element);
+        String moduleName = outermost.getSimpleName().toString();
+        if (packageName.isEmpty()) {
+            return moduleName + "." + prefixedName;
+        }
+        return packageName + "." + moduleName + "." + prefixedName;
+    }
+
+    /**
+     * @return The Haxe path for the given type. Types outside the packages being written keep their Java name.
+     */
+    public static String getHaxeName(TypeElement element) {
+        String result = INSTANCE.haxeNames.get(element);
+        if (result != null) return result;
+
+        if (INSTANCE.writtenPackages.contains(ElementUtils.getPackageName(element))) {
+            return buildHaxeName(element);
+        }
+        return element.getQualifiedName().toString();
+    }
+}
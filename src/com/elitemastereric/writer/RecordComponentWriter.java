@@ -1,7 +1,6 @@
 package com.elitemastereric.writer;
 
 import java.io.IOException;
-import java.io.OutputStream;
 
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.RecordComponentElement;
@@ -15,7 +14,7 @@ public class RecordComponentWriter extends BaseWriter {
      * @param element The class to write.
      * @throws IOException
      */
-    public static void writeRecordComponent(OutputStream out, RecordComponentElement element, int indent) throws IOException {
+    public static void writeRecordComponent(HaxePrinter out, RecordComponentElement element, int indent) throws IOException {
         boolean isPublic = false;
         boolean isPrivate = false;
         boolean isFinal = false;
@@ -43,7 +42,8 @@ public class RecordComponentWriter extends BaseWriter {
                     isVolatile = true;
                     break;
                 default:
-                    write(out, "~~~FIELDMODIFIER: %s%n", modifier);
+                    UnhandledReport.INSTANCE.record("FIELDMODIFIER");
+                    out.print("~~~FIELDMODIFIER: ").print(modifier).newline();
             }
         }
 
@@ -51,7 +51,7 @@ public class RecordComponentWriter extends BaseWriter {
         // DON'T WRITE THE FIELD IF IT'S PRIVATE
         //
         if (isPrivate || !isPublic) {
-            cancelQueue();
+            out.cancelQueue();
             return;
         }
 
@@ -60,8 +60,7 @@ public class RecordComponentWriter extends BaseWriter {
 
         DocumentationBuilder.writeDocs(out, element, indent);
 
-        writeIndent(out, indent);
-        write(out, "%s%s%s%s:%s;%n", isPublic ? "public " : "", isStatic ? "static " : "",
-                isFinal ? "final " : "var ", fieldName, typeName);
+        out.indent(indent).print(isPublic ? "public " : "").print(isStatic ? "static " : "")
+                .print(isFinal ? "final " : "var ").print(fieldName).print(":").print(typeName).println(";");
     }
 }
@@ -1,5 +1,8 @@
 package com.elitemastereric.writer;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
@@ -20,6 +23,7 @@ import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.Types;
 
 import com.elitemastereric.ElementUtils;
+import com.elitemastereric.RunStats;
 
 /**
  * Utilities for retrieving the name of a Type element.
@@ -28,8 +32,61 @@ public class TypeBuilder implements TypeVisitor<String, Void> {
 
     public static final TypeBuilder INSTANCE = new TypeBuilder();
 
+    /**
+     * The maximum number of rendered types to remember.
+     */
+    static final int CACHE_SIZE = 16384;
+
     private Types typeUtils = null;
 
+    /**
+     * A rendered type, and whether it holds markers for constructs which couldn't be converted.
+     */
+    private static class CachedType {
+        final String text;
+        final boolean hasMarkers;
+
+        CachedType(String text) {
+            this.text = text;
+            this.hasMarkers = text.contains("~~~");
+        }
+    }
+
+    /**
+     * Wraps a type so it is compared by identity, whatever its own equals does.
+     */
+    private static class IdentityKey {
+        final TypeMirror type;
+
+        IdentityKey(TypeMirror type) {
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof IdentityKey && ((IdentityKey) other).type == type;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(type);
+        }
+    }
+
+    /**
+     * Rendered declared and array types, keyed on the type objects themselves. javac hands out the same object
+     * for a declaration's type every time it is asked, so most lookups are answered here without building a key.
+     */
+    private final ConcurrentHashMap<IdentityKey, CachedType> identityCache = new ConcurrentHashMap<>();
+
+    /**
+     * Rendered declared and array types, keyed on their Java form, for equal types held in different objects.
+     * The Java form includes the type arguments and type annotations, and so the nullability.
+     */
+    private final ConcurrentHashMap<String, CachedType> cache = new ConcurrentHashMap<>();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
     public Types getTypeUtils() {
         if (typeUtils == null)
             throw new IllegalStateException("TypeUtils not set");
@@ -42,7 +99,72 @@ public class TypeBuilder implements TypeVisitor<String, Void> {
 
     public static String buildType(TypeMirror t) {
         if (t == null) return null;
-        return t.accept(INSTANCE, null);
+
+        RunStats.Frame frame = RunStats.INSTANCE.enter();
+        try {
+            return buildTypeUntimed(t);
+        } finally {
+            RunStats.INSTANCE.exit("TypeBuilder", frame);
+        }
+    }
+
+    private static String buildTypeUntimed(TypeMirror t) {
+        // Only types with type arguments or components are worth remembering.
+        if (t.getKind() != TypeKind.DECLARED && t.getKind() != TypeKind.ARRAY) {
+            return t.accept(INSTANCE, null);
+        }
+
+        return INSTANCE.buildCachedType(t);
+    }
+
+    private String buildCachedType(TypeMirror t) {
+        IdentityKey identityKey = new IdentityKey(t);
+        CachedType result = identityCache.get(identityKey);
+        if (result == null) {
+            String key = t.toString();
+            result = cache.get(key);
+            if (result == null) {
+                cacheMisses.increment();
+                result = new CachedType(t.accept(this, null));
+
+                // Once the cache is full, stop adding to it rather than paying to evict.
+                if (cache.size() < CACHE_SIZE) {
+                    cache.put(key, result);
+                }
+                rememberIdentity(identityKey, result);
+                return result.text;
+            }
+            rememberIdentity(identityKey, result);
+        }
+
+        cacheHits.increment();
+        // Whatever couldn't be converted the first time still can't be.
+        if (result.hasMarkers) UnhandledReport.INSTANCE.recordMarkers(result.text);
+        return result.text;
+    }
+
+    private void rememberIdentity(IdentityKey key, CachedType result) {
+        if (identityCache.size() < CACHE_SIZE) {
+            identityCache.put(key, result);
+        }
+    }
+
+    /**
+     * Forgets every rendered type. Must be called before each run, since the Haxe names of types can change.
+     */
+    public void resetCache() {
+        identityCache.clear();
+        cache.clear();
+        cacheHits.reset();
+        cacheMisses.reset();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
     }
 
     public static String buildType(Element e) {
@@ -76,19 +198,21 @@ public class TypeBuilder implements TypeVisitor<String, Void> {
             case DOUBLE:
                 return "Float";
             default:
+                UnhandledReport.INSTANCE.record("PRIMATIVE");
                 return "~~~PRIMATIVE:" + t.getKind();
         }
     }
 
     @Override
     public String visitNull(NullType t, Void _v) {
+        UnhandledReport.INSTANCE.record("NULLTYPE");
         return "~~~NULLTYPE:" + t.toString();
     }
 
     @Override
     public String visitArray(ArrayType t, Void _v) {
         if (ElementUtils.isNullable(t))
-            return String.format("Null<%s>", visitArray(t, null));
+            return String.format("Null<Array<%s>>", visit(t.getComponentType(), null));
 
         return String.format("Array<%s>", visit(t.getComponentType(), null));
     }
@@ -96,8 +220,12 @@ public class TypeBuilder implements TypeVisitor<String, Void> {
     @Override
     public String visitDeclared(DeclaredType t, Void _v) {
         if (ElementUtils.isNullable(t))
-            return String.format("Null<%s>", t.asElement().toString());
+            return String.format("Null<%s>", visitDeclaredType(t));
 
+        return visitDeclaredType(t);
+    }
+
+    private String visitDeclaredType(DeclaredType t) {
         if (t.getTypeArguments() != null && !t.getTypeArguments().isEmpty()) {
             String typeParamList = "";
             int elementNameIndex = 0;
@@ -105,9 +233,11 @@ public class TypeBuilder implements TypeVisitor<String, Void> {
             for (TypeMirror type : t.getTypeArguments()) {
                 if (type == null) continue;
 
-                String elementName = TypeBuilder.buildType(type);
+                String elementName;
     
-                if (type.getKind() == TypeKind.WILDCARD) {
+                if (type.getKind() != TypeKind.WILDCARD) {
+                    elementName = TypeBuilder.buildType(type);
+                } else {
                     // Don't reuse element names.
                     // elementName = BaseWriter.ELEMENT_NAMES[elementNameIndex++];
 
@@ -134,14 +264,15 @@ public class TypeBuilder implements TypeVisitor<String, Void> {
         
             if (typeParamList.isBlank()) typeParamList = "Dynamic";
 
-            return String.format("%s<%s>", t.asElement().toString(), typeParamList);
+            return String.format("%s<%s>", NameTable.getHaxeName((TypeElement) t.asElement()), typeParamList);
         }
 
-        return t.asElement().toString();
+        return NameTable.getHaxeName((TypeElement) t.asElement());
     }
 
     @Override
     public String visitError(ErrorType t, Void _v) {
+        UnhandledReport.INSTANCE.record("ERRORTYPE");
         return "~~~ERRORTYPE:" + t.toString();
     }
 
@@ -153,11 +284,13 @@ public class TypeBuilder implements TypeVisitor<String, Void> {
 
     @Override
     public String visitWildcard(WildcardType t, Void _v) {
+        UnhandledReport.INSTANCE.record("WILDCARDTYPE");
         return "~~~WILDCARDTYPE:" + t.toString();
     }
 
     @Override
     public String visitExecutable(ExecutableType t, Void _v) {
+        UnhandledReport.INSTANCE.record("EXECUTABLETYPE");
         return "~~~EXECUTABLETYPE:" + t.toString();
     }
 
@@ -168,16 +301,19 @@ public class TypeBuilder implements TypeVisitor<String, Void> {
 
     @Override
     public String visitUnknown(TypeMirror t, Void _v) {
+        UnhandledReport.INSTANCE.record("UNKNOWNTYPE");
         return "~~~UNKNOWNTYPE:" + t.toString();
     }
 
     @Override
     public String visitUnion(UnionType t, Void _v) {
+        UnhandledReport.INSTANCE.record("UNIONTYPE");
         return "~~~UNIONTYPE:" + t.toString();
     }
 
     @Override
     public String visitIntersection(IntersectionType t, Void _v) {
+        UnhandledReport.INSTANCE.record("INTERSECTIONTYPE");
         return "~~~INTERSECTIONTYPE:" + t.toString();
     }
 
@@ -0,0 +1,300 @@
+package com.elitemastereric.writer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+import com.elitemastereric.ElementUtils;
+
+/**
+ * The supertypes of the types being written, worked out once per run and shared by every writer.
+ *
+ * Each type's supertypes are looked up once, and the lists built from them reuse those of the supertypes,
+ * so deep hierarchies aren't walked again for every subclass. Supertypes which get no extern, by
+ * {@link BaseWriter#hasExtern}, are skipped, and the types they extend are used instead.
+ *
+ * The hierarchy of every type being written, their supertypes and the methods their methods override are
+ * built on the main thread before the writers start, since javac completes symbols lazily and isn't
+ * thread-safe while doing so. The writers only read them. Anything else is built when first looked up,
+ * under a lock, which is only safe while no other thread is using the compiler.
+ */
+public class TypeHierarchy {
+
+    public static final TypeHierarchy INSTANCE = new TypeHierarchy();
+
+    /**
+     * The implicit superclasses, which aren't written as supertypes.
+     * Enums are written extending {@code java.lang.Enum} by the enum writer itself.
+     */
+    private static final Set<String> IMPLICIT_SUPERCLASSES = Set.of("java.lang.Object", "java.lang.Record",
+            "java.lang.Enum");
+
+    private static class Node {
+        /**
+         * The superclass written after {@code extends}, or null.
+         */
+        DeclaredType superclass;
+
+        /**
+         * The interfaces written after {@code implements}, or {@code extends} for interfaces.
+         */
+        List<DeclaredType> interfaces;
+
+        /**
+         * The classes this type extends in Haxe, nearest first. Only methods of these can be overridden.
+         */
+        List<TypeElement> haxeSuperclasses;
+
+        /**
+         * Every supertype, in the order inherited documentation is searched: the interfaces and their
+         * supertypes, then the superclass and its supertypes.
+         */
+        List<TypeElement> allSupertypes;
+
+        /**
+         * The instance methods declared by this type, by name.
+         */
+        Map<String, List<ExecutableElement>> methodsByName;
+    }
+
+    private Types typeUtils = null;
+
+    private Map<TypeElement, Node> nodes = new ConcurrentHashMap<>();
+    private Map<ExecutableElement, List<ExecutableElement>> overriddenMethods = new ConcurrentHashMap<>();
+
+    /**
+     * Builds the hierarchy of the given types, every type nested inside them, and their supertypes.
+     * Called once per run on the main thread, before any types are written.
+     */
+    public void build(Set<TypeElement> elements, Types typeUtils) {
+        this.typeUtils = typeUtils;
+        nodes = new ConcurrentHashMap<>();
+        overriddenMethods = new ConcurrentHashMap<>();
+
+        for (TypeElement element : elements) {
+            addType(element);
+        }
+    }
+
+    private void addType(TypeElement element) {
+        getNode(element);
+
+        for (Element innerElement : element.getEnclosedElements()) {
+            if (innerElement instanceof TypeElement) {
+                addType((TypeElement) innerElement);
+            } else if (innerElement.getKind() == ElementKind.METHOD) {
+                getOverriddenMethods((ExecutableElement) innerElement);
+            }
+        }
+    }
+
+    /**
+     * @return The superclass to write after {@code extends}, or null if the class has none to write.
+     */
+    public DeclaredType getSuperclass(TypeElement element) {
+        return getNode(element).superclass;
+    }
+
+    /**
+     * @return The interfaces the type implements, or extends if it is an interface.
+     */
+    public List<DeclaredType> getInterfaces(TypeElement element) {
+        return getNode(element).interfaces;
+    }
+
+    /**
+     * @return Every supertype of the type, nearest first, with interfaces before the superclass.
+     */
+    public List<TypeElement> getAllSupertypes(TypeElement element) {
+        return getNode(element).allSupertypes;
+    }
+
+    /**
+     * @return The methods the given method overrides, in the order of {@link #getAllSupertypes}.
+     */
+    public List<ExecutableElement> getOverriddenMethods(ExecutableElement method) {
+        List<ExecutableElement> result = overriddenMethods.get(method);
+        if (result != null) return result;
+
+        synchronized (this) {
+            return overriddenMethods.computeIfAbsent(method, this::findOverriddenMethods);
+        }
+    }
+
+    /**
+     * @return Whether the method overrides one of a class it extends in Haxe, and so needs {@code override}.
+     */
+    public boolean overridesSuperclassMethod(ExecutableElement method) {
+        if (!(method.getEnclosingElement() instanceof TypeElement)) return false;
+
+        List<TypeElement> haxeSuperclasses = getNode((TypeElement) method.getEnclosingElement()).haxeSuperclasses;
+        for (ExecutableElement overridden : getOverriddenMethods(method)) {
+            if (haxeSuperclasses.contains(overridden.getEnclosingElement())) return true;
+        }
+        return false;
+    }
+
+    private Node getNode(TypeElement element) {
+        Node node = nodes.get(element);
+        if (node != null) return node;
+
+        synchronized (this) {
+            node = nodes.get(element);
+            if (node != null) return node;
+
+            // Supertypes are added first, so this can't recurse forever in valid Java.
+            node = buildNode(element);
+            nodes.put(element, node);
+            return node;
+        }
+    }
+
+    private Node buildNode(TypeElement element) {
+        Node node = new Node();
+
+        TypeElement superclassElement = asTypeElement(element.getSuperclass());
+
+        LinkedHashSet<TypeElement> allSupertypes = new LinkedHashSet<>();
+        for (TypeMirror type : element.getInterfaces()) {
+            TypeElement interfaceElement = asTypeElement(type);
+            if (interfaceElement == null) continue;
+            allSupertypes.add(interfaceElement);
+            allSupertypes.addAll(getNode(interfaceElement).allSupertypes);
+        }
+        if (superclassElement != null) {
+            allSupertypes.add(superclassElement);
+            allSupertypes.addAll(getNode(superclassElement).allSupertypes);
+        }
+        node.allSupertypes = List.copyOf(allSupertypes);
+
+        // Interfaces of hidden superclasses are written on this type instead.
+        List<DeclaredType> interfaces = new ArrayList<>();
+        Set<Element> seen = new HashSet<>();
+        TypeMirror superclass = element.getSuperclass();
+        while (superclass.getKind() == TypeKind.DECLARED && !BaseWriter.hasExtern(asTypeElement(superclass))) {
+            List<? extends TypeMirror> supertypes = typeUtils.directSupertypes(superclass);
+            superclass = null;
+            for (TypeMirror supertype : supertypes) {
+                if (asTypeElement(supertype) == null) continue;
+                if (asTypeElement(supertype).getKind() == ElementKind.INTERFACE) {
+                    addVisibleInterface(supertype, interfaces, seen);
+                } else if (superclass == null) {
+                    superclass = supertype;
+                }
+            }
+            if (superclass == null) break;
+        }
+        for (TypeMirror type : element.getInterfaces()) {
+            addVisibleInterface(type, interfaces, seen);
+        }
+        node.interfaces = List.copyOf(interfaces);
+
+        TypeElement haxeSuperclass = null;
+        if (element.getKind() == ElementKind.ENUM) {
+            haxeSuperclass = superclassElement;
+        } else if (superclass != null && superclass.getKind() == TypeKind.DECLARED
+                && !IMPLICIT_SUPERCLASSES.contains(asTypeElement(superclass).getQualifiedName().toString())) {
+            node.superclass = (DeclaredType) superclass;
+            haxeSuperclass = asTypeElement(superclass);
+        }
+
+        List<TypeElement> haxeSuperclasses = new ArrayList<>();
+        if (haxeSuperclass != null) {
+            haxeSuperclasses.add(haxeSuperclass);
+            haxeSuperclasses.addAll(getNode(haxeSuperclass).haxeSuperclasses);
+        }
+        node.haxeSuperclasses = List.copyOf(haxeSuperclasses);
+
+        Map<String, List<ExecutableElement>> methodsByName = new HashMap<>();
+        for (Element member : element.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.METHOD) continue;
+            if (member.getModifiers().contains(Modifier.STATIC) || member.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            methodsByName.computeIfAbsent(member.getSimpleName().toString(), k -> new ArrayList<>())
+                    .add((ExecutableElement) member);
+        }
+        node.methodsByName = methodsByName;
+
+        return node;
+    }
+
+    /**
+     * Adds the interface if it is written, or else the interfaces it extends.
+     */
+    private void addVisibleInterface(TypeMirror type, List<DeclaredType> interfaces, Set<Element> seen) {
+        TypeElement interfaceElement = asTypeElement(type);
+        if (interfaceElement == null || !seen.add(interfaceElement)) return;
+
+        if (BaseWriter.hasExtern(interfaceElement)) {
+            interfaces.add((DeclaredType) type);
+            return;
+        }
+        for (TypeMirror supertype : typeUtils.directSupertypes(type)) {
+            if (asTypeElement(supertype) != null && asTypeElement(supertype).getKind() == ElementKind.INTERFACE) {
+                addVisibleInterface(supertype, interfaces, seen);
+            }
+        }
+    }
+
+    private List<ExecutableElement> findOverriddenMethods(ExecutableElement method) {
+        if (method.getKind() != ElementKind.METHOD || method.getModifiers().contains(Modifier.STATIC)
+                || method.getModifiers().contains(Modifier.PRIVATE)
+                || !(method.getEnclosingElement() instanceof TypeElement)) {
+            return List.of();
+        }
+
+        TypeElement owner = (TypeElement) method.getEnclosingElement();
+        DeclaredType ownerType = (DeclaredType) owner.asType();
+        ExecutableType methodType = (ExecutableType) method.asType();
+        String packageName = ElementUtils.getPackageName(owner);
+
+        List<ExecutableElement> result = new ArrayList<>();
+        for (TypeElement supertype : getNode(owner).allSupertypes) {
+            List<ExecutableElement> candidates = getNode(supertype).methodsByName
+                    .get(method.getSimpleName().toString());
+            if (candidates == null) continue;
+
+            for (ExecutableElement candidate : candidates) {
+                // Package private methods are only overridden from the same package.
+                if (!candidate.getModifiers().contains(Modifier.PUBLIC)
+                        && !candidate.getModifiers().contains(Modifier.PROTECTED)
+                        && !ElementUtils.getPackageName(supertype).equals(packageName)) {
+                    continue;
+                }
+                if (candidate.getParameters().size() != method.getParameters().size()) continue;
+
+                try {
+                    ExecutableType candidateType = (ExecutableType) typeUtils.asMemberOf(ownerType, candidate);
+                    if (typeUtils.isSubsignature(methodType, candidateType)) {
+                        result.add(candidate);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // The candidate isn't a member of the owner, so it isn't overridden.
+                }
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    private static TypeElement asTypeElement(TypeMirror type) {
+        if (type == null || type.getKind() != TypeKind.DECLARED) return null;
+        return (TypeElement) ((DeclaredType) type).asElement();
+    }
+}
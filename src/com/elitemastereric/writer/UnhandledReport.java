@@ -0,0 +1,225 @@
+package com.elitemastereric.writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+
+import com.elitemastereric.RunStats;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.DocTrees;
+import com.sun.source.util.TreePath;
+
+/**
+ * Records every construct the writers don't know how to convert, which they write out as {@code ~~~KIND}.
+ *
+ * Each kind is counted per element being written when it was found. Source positions are worked out after
+ * each run, since only then is it safe to use the compiler trees from the main thread.
+ */
+public class UnhandledReport {
+
+    public static final UnhandledReport INSTANCE = new UnhandledReport();
+
+    /**
+     * Finds the total at the start of a written report.
+     */
+    private static final Pattern TOTAL = Pattern.compile("\"total\": (\\d+)");
+
+    private static class Entry {
+        final String kind;
+        final String elementName;
+        final LongAdder count = new LongAdder();
+
+        /**
+         * Kept until the position is resolved.
+         */
+        volatile Element element;
+        volatile String position;
+
+        Entry(String kind, String elementName, Element element) {
+            this.kind = kind;
+            this.elementName = elementName;
+            this.element = element;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The element being written on each thread, which any constructs found are recorded against.
+     */
+    private final ThreadLocal<Element> currentElement = new ThreadLocal<>();
+
+    /**
+     * Whether constructs found on each thread are ignored, while rendering text which is recorded when reused.
+     */
+    private final ThreadLocal<Boolean> muted = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * Sets the element being written on this thread.
+     *
+     * @return The previous element, to pass to {@link #exit}.
+     */
+    Element enter(Element element) {
+        Element previous = currentElement.get();
+        currentElement.set(element);
+        return previous;
+    }
+
+    void exit(Element previous) {
+        currentElement.set(previous);
+    }
+
+    /**
+     * Sets whether constructs found on this thread are ignored.
+     *
+     * @return Whether they were ignored before, to set back afterwards.
+     */
+    boolean setMuted(boolean muted) {
+        boolean previous = this.muted.get();
+        this.muted.set(muted);
+        return previous;
+    }
+
+    /**
+     * Records an unhandled construct of the given kind, in the element currently being written.
+     */
+    public void record(String kind) {
+        if (muted.get()) return;
+
+        Element element = currentElement.get();
+        String elementName = getElementName(element);
+        entries.computeIfAbsent(kind + "\t" + elementName, k -> new Entry(kind, elementName, element)).count
+                .increment();
+    }
+
+    /**
+     * Records every construct marked in already rendered text, when the text is reused.
+     */
+    void recordMarkers(String text) {
+        int index = text.indexOf("~~~");
+        while (index >= 0) {
+            int start = index + 3;
+            int end = start;
+            while (end < text.length() && Character.isUpperCase(text.charAt(end))) {
+                end++;
+            }
+            if (end > start) record(text.substring(start, end));
+            index = text.indexOf("~~~", end);
+        }
+    }
+
+    private static String getElementName(Element element) {
+        if (element == null) return "";
+        if (element instanceof TypeElement) return ((TypeElement) element).getQualifiedName().toString();
+
+        Element enclosing = element.getEnclosingElement();
+        if (enclosing instanceof TypeElement) {
+            return ((TypeElement) enclosing).getQualifiedName() + "#" + element;
+        }
+        return element.toString();
+    }
+
+    /**
+     * Works out the source position of everything recorded so far, and lets go of the elements.
+     * Called at the end of each run, on the main thread.
+     */
+    public void resolvePositions(DocTrees docTrees) {
+        for (Entry entry : entries.values()) {
+            Element element = entry.element;
+            if (element == null) continue;
+
+            entry.position = getPosition(docTrees, element);
+            entry.element = null;
+        }
+    }
+
+    private static String getPosition(DocTrees docTrees, Element element) {
+        TreePath path;
+        try {
+            path = docTrees.getPath(element);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        // Elements read from class files have no trees.
+        if (path == null) return null;
+
+        CompilationUnitTree unit = path.getCompilationUnit();
+        long start = docTrees.getSourcePositions().getStartPosition(unit, path.getLeaf());
+        String file = unit.getSourceFile().getName();
+        if (start < 0) return file;
+        return file + ":" + unit.getLineMap().getLineNumber(start);
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.count.sum();
+        }
+        return total;
+    }
+
+    /**
+     * @return The total of a report written by {@link #write}, or by combining several.
+     */
+    public static long readTotal(File file) throws IOException {
+        Matcher matcher = TOTAL.matcher(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    public void reset() {
+        entries.clear();
+    }
+
+    /**
+     * Writes the report as JSON: the total, the count of each kind, and every kind and element with its count.
+     */
+    public void write(File file) throws IOException {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(Comparator.comparing((Entry entry) -> entry.kind).thenComparing(entry -> entry.elementName));
+
+        Map<String, Long> byKind = new TreeMap<>();
+        for (Entry entry : sorted) {
+            byKind.merge(entry.kind, entry.count.sum(), Long::sum);
+        }
+
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"total\": ").append(getTotal()).append(",\n");
+        json.append("  \"kinds\": {");
+        boolean first = true;
+        for (Map.Entry<String, Long> kind : byKind.entrySet()) {
+            json.append(first ? "\n    " : ",\n    ").append(RunStats.quote(kind.getKey())).append(": ")
+                    .append(kind.getValue());
+            first = false;
+        }
+        json.append(first ? "},\n" : "\n  },\n");
+        json.append("  \"entries\": [");
+        first = true;
+        for (Entry entry : sorted) {
+            json.append(first ? "\n    " : ",\n    ");
+            json.append("{\"kind\": ").append(RunStats.quote(entry.kind));
+            json.append(", \"element\": ").append(RunStats.quote(entry.elementName));
+            json.append(", \"position\": ").append(entry.position == null ? "null" : RunStats.quote(entry.position));
+            json.append(", \"count\": ").append(entry.count.sum()).append("}");
+            first = false;
+        }
+        json.append(first ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        Files.writeString(file.toPath(), json, StandardCharsets.UTF_8);
+    }
+}